@@ -0,0 +1,74 @@
+package org.example.warehouse_management_sys.Config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * 库存预测专用线程池：单线程串行执行，最多占用一个数据库连接
+     */
+    @Bean("predictionExecutor")
+    public ThreadPoolTaskExecutor predictionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        executor.setThreadNamePrefix("db4ai-predict-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 出入库异常打分线程池：单线程保证同一物料的统计按提交顺序更新
+     */
+    @Bean("anomalyExecutor")
+    public ThreadPoolTaskExecutor anomalyExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("db4ai-anomaly-");
+        // 队列满时拒绝，由打分服务记下跳过的记录交给增量检测补打；
+        // 不能回落到提交线程（事务提交回调中无法安全写库）
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 模型重训线程池：按批次并行，限制同时占用的数据库连接数
+     */
+    @Bean("retrainExecutor")
+    public ThreadPoolTaskExecutor retrainExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("db4ai-retrain-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 慢语句 EXPLAIN 采样线程池：单线程，最多占用一个连接，队列满时丢弃
+     */
+    @Bean("explainExecutor")
+    public ThreadPoolTaskExecutor explainExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("slow-query-explain-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.warehouse_management_sys.Config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.warehouse_management_sys.Service.AuthTokenService;
+import org.example.warehouse_management_sys.Utils.Result;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 接口令牌校验：除登录外的 /api 请求须携带 Authorization: Bearer 令牌，
+ * 校验通过后把操作员ID放入请求属性 {@link #OPERATOR_ID_ATTRIBUTE}
+ */
+public class AuthTokenFilter extends OncePerRequestFilter {
+
+    public static final String OPERATOR_ID_ATTRIBUTE = "operatorId";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String LOGIN_PATH = "/api/auth/login";
+
+    private final AuthTokenService authTokenService;
+    private final ObjectMapper objectMapper;
+
+    public AuthTokenFilter(AuthTokenService authTokenService, ObjectMapper objectMapper) {
+        this.authTokenService = authTokenService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return LOGIN_PATH.equals(path) || HttpMethod.OPTIONS.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String header = request.getHeader("Authorization");
+        String operatorId = header != null && header.startsWith(BEARER_PREFIX)
+                ? authTokenService.verify(header.substring(BEARER_PREFIX.length()).trim())
+                : null;
+        if (operatorId == null) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            objectMapper.writeValue(response.getWriter(), Result.error(401, "登录已过期，请重新登录"));
+            return;
+        }
+        request.setAttribute(OPERATOR_ID_ATTRIBUTE, operatorId);
+        filterChain.doFilter(request, response);
+    }
+}
@@ -1,26 +1,69 @@
 package org.example.warehouse_management_sys.Config;
 
 import com.alibaba.druid.pool.DruidDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.warehouse_management_sys.Service.SlowQueryService;
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 
 import javax.sql.DataSource;
 
 @Configuration
+@EnableConfigurationProperties(ReplicaProperties.class)
 public class DataSourceConfig {
 
+    /**
+     * 主库连接池：连接信息取 spring.datasource，连接池和过滤器设置取 spring.datasource.druid
+     */
     @Bean
-    @Primary
     @ConfigurationProperties("spring.datasource")
-    public DataSource dataSource() {
-        return new DruidDataSource();
+    public DruidDataSource primaryDataSource(Environment environment) {
+        DruidDataSource dataSource = new DruidDataSource();
+        Binder.get(environment).bind("spring.datasource.druid", Bindable.ofInstance(dataSource));
+        return dataSource;
     }
+
+    /**
+     * 读写分离：只读事务分流到副本（app.datasource.replicas），未配置副本时等同主库
+     */
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(DruidDataSource primaryDataSource,
+                                                       ReplicaProperties replicaProperties) {
+        ReadWriteRoutingDataSource routingDataSource =
+                new ReadWriteRoutingDataSource(primaryDataSource, replicaProperties);
+        routingDataSource.checkReplicas();
+        return routingDataSource;
+    }
+
+    /**
+     * 对外数据源：延迟到执行第一条语句时才取物理连接，
+     * 事务管理器开启事务时只读标记尚未设置，延迟获取才能按只读路由
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * JdbcTemplate 经代理记录调用指标（按调用方法和操作统计耗时、行数、错误）
+     */
     @Bean
-    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
-        return new JdbcTemplate(dataSource);
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, MeterRegistry meterRegistry,
+                                     SlowQueryService slowQueryService) {
+        ProxyFactory proxyFactory = new ProxyFactory(new JdbcTemplate(dataSource));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new JdbcTemplateMetricsInterceptor(meterRegistry, slowQueryService));
+        return (JdbcTemplate) proxyFactory.getProxy();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package org.example.warehouse_management_sys.Config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.example.warehouse_management_sys.Service.SlowQueryService;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.SqlProvider;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * JdbcTemplate 调用指标：按调用方（业务类.方法）和操作记录耗时直方图、行数和错误次数。
+ * SQL 文本含动态占位符，不作为标签，以调用方法作为与 MyBatis 语句ID对应的维度。
+ * 超过慢语句阈值时交给 {@link SlowQueryService} 记录SQL和参数。
+ */
+public class JdbcTemplateMetricsInterceptor implements MethodInterceptor {
+
+    private static final String APP_PACKAGE = "org.example.warehouse_management_sys.";
+    private static final String CONFIG_PACKAGE = APP_PACKAGE + "Config.";
+    private static final String UNKNOWN_CALLER = "unknown";
+
+    private static final Set<String> OPERATIONS = Arrays.stream(JdbcOperations.class.getMethods())
+            .map(Method::getName)
+            .collect(Collectors.toSet());
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private final MeterRegistry meterRegistry;
+    private final SlowQueryService slowQueryService;
+
+    // key: 调用方|操作
+    private final Map<String, CallMeters> meters = new ConcurrentHashMap<>();
+
+    public JdbcTemplateMetricsInterceptor(MeterRegistry meterRegistry, SlowQueryService slowQueryService) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryService = slowQueryService;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        String operation = invocation.getMethod().getName();
+        if (!OPERATIONS.contains(operation)) {
+            return invocation.proceed();
+        }
+        String caller = resolveCaller();
+        CallMeters callMeters = meters.computeIfAbsent(caller + "|" + operation,
+                key -> new CallMeters(meterRegistry, caller, operation, slowQueryService.thresholdNanos(caller)));
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            long elapsed = System.nanoTime() - start;
+            callMeters.success.record(elapsed, TimeUnit.NANOSECONDS);
+            callMeters.rows.record(rowCount(operation, result));
+            if (elapsed > callMeters.slowThresholdNanos) {
+                recordSlow(invocation, caller, elapsed, callMeters.slowThresholdNanos, true);
+            }
+            return result;
+        } catch (Throwable e) {
+            long elapsed = System.nanoTime() - start;
+            callMeters.failure.record(elapsed, TimeUnit.NANOSECONDS);
+            callMeters.errors.increment();
+            if (elapsed > callMeters.slowThresholdNanos) {
+                recordSlow(invocation, caller, elapsed, callMeters.slowThresholdNanos, false);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * SQL 取第一个字符串参数或 SqlProvider，绑定值取可变参数数组
+     */
+    private void recordSlow(MethodInvocation invocation, String caller, long elapsed, long threshold,
+                            boolean success) {
+        Object[] args = invocation.getArguments();
+        slowQueryService.record(SlowQueryService.SOURCE_JDBC, caller, elapsed, threshold, success,
+                () -> {
+                    for (Object arg : args) {
+                        if (arg instanceof String) {
+                            return (String) arg;
+                        }
+                        if (arg instanceof SqlProvider) {
+                            return ((SqlProvider) arg).getSql();
+                        }
+                    }
+                    return "";
+                },
+                () -> {
+                    for (Object arg : args) {
+                        if (arg instanceof Object[]) {
+                            return Arrays.asList((Object[]) arg);
+                        }
+                    }
+                    return Collections.emptyList();
+                });
+    }
+
+    /**
+     * 调用栈中第一个业务方法，lambda 归到其所在方法
+     */
+    private static String resolveCaller() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(APP_PACKAGE)
+                        && !f.getClassName().startsWith(CONFIG_PACKAGE)
+                        && !f.getClassName().contains("$$"))
+                .findFirst()
+                .map(f -> simpleName(f.getClassName()) + "." + methodName(f.getMethodName()))
+                .orElse(UNKNOWN_CALLER));
+    }
+
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        int inner = name.indexOf('$');
+        return inner > 0 ? name.substring(0, inner) : name;
+    }
+
+    private static String methodName(String methodName) {
+        // lambda$processNextChunk$3 -> processNextChunk
+        if (methodName.startsWith("lambda$")) {
+            String rest = methodName.substring("lambda$".length());
+            int end = rest.indexOf('$');
+            return end > 0 ? rest.substring(0, end) : rest;
+        }
+        return methodName;
+    }
+
+    private static long rowCount(String operation, Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof int[]) {
+            return Arrays.stream((int[]) result).filter(n -> n > 0).sum();
+        }
+        if (result instanceof int[][]) {
+            return Arrays.stream((int[][]) result).flatMapToInt(Arrays::stream).filter(n -> n > 0).sum();
+        }
+        if (result instanceof Number && operation.startsWith("update")) {
+            return ((Number) result).longValue();
+        }
+        return result == null ? 0 : 1;
+    }
+
+    private static class CallMeters {
+        final Timer success;
+        final Timer failure;
+        final DistributionSummary rows;
+        final Counter errors;
+        final long slowThresholdNanos;
+
+        CallMeters(MeterRegistry registry, String caller, String operation, long slowThresholdNanos) {
+            this.slowThresholdNanos = slowThresholdNanos;
+            this.success = timer(registry, caller, operation, "success");
+            this.failure = timer(registry, caller, operation, "error");
+            this.rows = DistributionSummary.builder("jdbc.template.rows")
+                    .description("JdbcTemplate 调用返回或影响的行数")
+                    .tag("caller", caller)
+                    .tag("operation", operation)
+                    .register(registry);
+            this.errors = Counter.builder("jdbc.template.errors")
+                    .description("JdbcTemplate 调用失败次数")
+                    .tag("caller", caller)
+                    .tag("operation", operation)
+                    .register(registry);
+        }
+
+        private static Timer timer(MeterRegistry registry, String caller, String operation, String outcome) {
+            return Timer.builder("jdbc.template")
+                    .description("JdbcTemplate 调用耗时")
+                    .tag("caller", caller)
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+}
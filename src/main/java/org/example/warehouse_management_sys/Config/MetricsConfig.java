@@ -0,0 +1,76 @@
+package org.example.warehouse_management_sys.Config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.example.warehouse_management_sys.Service.SlowQueryService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * 监控指标：MyBatis 语句指标拦截器和 Druid 连接池指标，经 /actuator/prometheus 暴露
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * MyBatis 自动配置会注册容器中的 Interceptor
+     */
+    @Bean
+    public MybatisMetricsInterceptor mybatisMetricsInterceptor(MeterRegistry meterRegistry,
+                                                               SlowQueryService slowQueryService) {
+        return new MybatisMetricsInterceptor(meterRegistry, slowQueryService);
+    }
+
+    /**
+     * Druid 连接池指标（主库及各副本）：活跃/空闲连接、上限、等待线程及累计等待
+     */
+    @Bean
+    public MeterBinder druidPoolMetrics(ReadWriteRoutingDataSource routingDataSource) {
+        return registry -> routingDataSource.getPools().forEach((pool, druid) -> bindPool(registry, pool, druid));
+    }
+
+    /**
+     * 读写分离指标：副本延迟及按去向统计的取连接次数
+     */
+    @Bean
+    public MeterBinder routingMetrics(ReadWriteRoutingDataSource routingDataSource) {
+        return registry -> {
+            routingDataSource.getReplicaLags().keySet().forEach(replica ->
+                    Gauge.builder("datasource.replica.lag", routingDataSource,
+                                    ds -> ds.getReplicaLags().getOrDefault(replica, -1L))
+                            .description("副本复制延迟(毫秒)，-1 表示检测失败")
+                            .tag("replica", replica)
+                            .register(registry));
+            FunctionCounter.builder("datasource.routing.connections", routingDataSource,
+                            ReadWriteRoutingDataSource::getPrimaryConnections)
+                    .description("按去向统计的取连接次数").tag("target", "primary").register(registry);
+            FunctionCounter.builder("datasource.routing.connections", routingDataSource,
+                            ReadWriteRoutingDataSource::getReplicaConnections)
+                    .description("按去向统计的取连接次数").tag("target", "replica").register(registry);
+            FunctionCounter.builder("datasource.routing.connections", routingDataSource,
+                            ReadWriteRoutingDataSource::getFallbackConnections)
+                    .description("按去向统计的取连接次数").tag("target", "fallback").register(registry);
+        };
+    }
+
+    private static void bindPool(MeterRegistry registry, String pool, DruidDataSource druid) {
+        Gauge.builder("druid.pool.active", druid, DruidDataSource::getActiveCount)
+                .description("正在使用的连接数").tag("pool", pool).register(registry);
+        Gauge.builder("druid.pool.idle", druid, DruidDataSource::getPoolingCount)
+                .description("池中空闲连接数").tag("pool", pool).register(registry);
+        Gauge.builder("druid.pool.max", druid, DruidDataSource::getMaxActive)
+                .description("最大连接数").tag("pool", pool).register(registry);
+        Gauge.builder("druid.pool.wait.threads", druid, DruidDataSource::getWaitThreadCount)
+                .description("等待获取连接的线程数").tag("pool", pool).register(registry);
+        FunctionCounter.builder("druid.pool.wait.count", druid, DruidDataSource::getNotEmptyWaitCount)
+                .description("累计等待获取连接次数").tag("pool", pool).register(registry);
+        FunctionCounter.builder("druid.pool.wait.time", druid, ds -> ds.getNotEmptyWaitMillis() / 1000.0)
+                .description("累计等待获取连接时间(秒)").baseUnit("seconds").tag("pool", pool).register(registry);
+        FunctionCounter.builder("druid.pool.errors", druid, DruidDataSource::getErrorCount)
+                .description("连接池错误次数").tag("pool", pool).register(registry);
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.warehouse_management_sys.Config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.example.warehouse_management_sys.Service.SlowQueryService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyBatis 语句级指标：按 Mapper 语句ID记录耗时直方图、返回/影响行数和错误次数，
+ * 超过慢语句阈值时交给 {@link SlowQueryService} 记录绑定后的SQL和参数
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class,
+                        CacheKey.class, BoundSql.class})
+})
+public class MybatisMetricsInterceptor implements Interceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final SlowQueryService slowQueryService;
+
+    // key: 语句ID
+    private final Map<String, StatementMeters> meters = new ConcurrentHashMap<>();
+
+    public MybatisMetricsInterceptor(MeterRegistry meterRegistry, SlowQueryService slowQueryService) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryService = slowQueryService;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        StatementMeters statementMeters = meters.computeIfAbsent(statement.getId(),
+                id -> new StatementMeters(meterRegistry, id, statement.getSqlCommandType().name(),
+                        slowQueryService.thresholdNanos(id)));
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            long elapsed = System.nanoTime() - start;
+            statementMeters.success.record(elapsed, TimeUnit.NANOSECONDS);
+            statementMeters.rows.record(rowCount(result));
+            if (elapsed > statementMeters.slowThresholdNanos) {
+                recordSlow(invocation, statement, elapsed, statementMeters.slowThresholdNanos, true);
+            }
+            return result;
+        } catch (Throwable e) {
+            long elapsed = System.nanoTime() - start;
+            statementMeters.failure.record(elapsed, TimeUnit.NANOSECONDS);
+            statementMeters.errors.increment();
+            if (elapsed > statementMeters.slowThresholdNanos) {
+                recordSlow(invocation, statement, elapsed, statementMeters.slowThresholdNanos, false);
+            }
+            throw e;
+        }
+    }
+
+    private void recordSlow(Invocation invocation, MappedStatement statement, long elapsed, long threshold,
+                            boolean success) {
+        Object[] args = invocation.getArgs();
+        BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : statement.getBoundSql(args[1]);
+        slowQueryService.record(SlowQueryService.SOURCE_MYBATIS, statement.getId(), elapsed, threshold, success,
+                boundSql::getSql, () -> parameterValues(statement, boundSql));
+    }
+
+    /**
+     * 按 DefaultParameterHandler 的规则取出各占位符的绑定值
+     */
+    private static List<Object> parameterValues(MappedStatement statement, BoundSql boundSql) {
+        Configuration configuration = statement.getConfiguration();
+        TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        Object parameterObject = boundSql.getParameterObject();
+        MetaObject metaObject = null;
+        List<Object> values = new ArrayList<>();
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            if (mapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String property = mapping.getProperty();
+            if (boundSql.hasAdditionalParameter(property)) {
+                values.add(boundSql.getAdditionalParameter(property));
+            } else if (parameterObject == null) {
+                values.add(null);
+            } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+                values.add(parameterObject);
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameterObject);
+                }
+                values.add(metaObject.getValue(property));
+            }
+        }
+        return values;
+    }
+
+    private static long rowCount(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        return result == null ? 0 : 1;
+    }
+
+    private static class StatementMeters {
+        final Timer success;
+        final Timer failure;
+        final DistributionSummary rows;
+        final Counter errors;
+        final long slowThresholdNanos;
+
+        StatementMeters(MeterRegistry registry, String statementId, String commandType, long slowThresholdNanos) {
+            this.slowThresholdNanos = slowThresholdNanos;
+            this.success = timer(registry, statementId, commandType, "success");
+            this.failure = timer(registry, statementId, commandType, "error");
+            this.rows = DistributionSummary.builder("mybatis.statement.rows")
+                    .description("MyBatis 语句返回或影响的行数")
+                    .tag("statement", statementId)
+                    .register(registry);
+            this.errors = Counter.builder("mybatis.statement.errors")
+                    .description("MyBatis 语句执行失败次数")
+                    .tag("statement", statementId)
+                    .register(registry);
+        }
+
+        private static Timer timer(MeterRegistry registry, String statementId, String commandType, String outcome) {
+            return Timer.builder("mybatis.statement")
+                    .description("MyBatis 语句执行耗时")
+                    .tag("statement", statementId)
+                    .tag("type", commandType)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+}
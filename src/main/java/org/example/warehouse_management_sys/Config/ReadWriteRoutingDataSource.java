@@ -0,0 +1,213 @@
+package org.example.warehouse_management_sys.Config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读写分离数据源：只读事务（@Transactional(readOnly = true)）轮询分流到健康的副本，
+ * 其余请求走主库。副本延迟超过阈值、检测失败或取连接失败时回落主库。
+ * 需配合 LazyConnectionDataSourceProxy 使用，保证取连接时只读标记已经生效。
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    private final DruidDataSource primary;
+    private final List<ReplicaPool> replicas = new ArrayList<>();
+    private final long maxLagMs;
+    private final String lagQuery;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLong primaryConnections = new AtomicLong();
+    private final AtomicLong replicaConnections = new AtomicLong();
+    private final AtomicLong fallbackConnections = new AtomicLong();
+
+    public ReadWriteRoutingDataSource(DruidDataSource primary, ReplicaProperties properties) {
+        this(primary, createReplicaPools(primary, properties), properties.getMaxLagMs(), properties.getLagQuery());
+    }
+
+    ReadWriteRoutingDataSource(DruidDataSource primary, Map<String, DruidDataSource> replicaPools,
+                               long maxLagMs, String lagQuery) {
+        this.primary = primary;
+        this.maxLagMs = maxLagMs;
+        this.lagQuery = lagQuery;
+        replicaPools.forEach((name, pool) -> replicas.add(new ReplicaPool(name, pool)));
+        log.info("读写分离数据源: 副本{}个, 最大延迟{}ms", replicas.size(), maxLagMs);
+    }
+
+    private static Map<String, DruidDataSource> createReplicaPools(DruidDataSource primary,
+                                                                   ReplicaProperties properties) {
+        Map<String, DruidDataSource> pools = new LinkedHashMap<>();
+        for (ReplicaProperties.Replica replica : properties.getReplicas()) {
+            DruidDataSource pool = new DruidDataSource();
+            pool.setName(replica.getName());
+            pool.setDriverClassName(primary.getDriverClassName());
+            pool.setUrl(replica.getUrl());
+            pool.setUsername(replica.getUsername() != null ? replica.getUsername() : primary.getUsername());
+            pool.setPassword(replica.getPassword() != null ? replica.getPassword() : primary.getPassword());
+            pool.setMaxActive(replica.getMaxActive());
+            pool.setMaxWait(replica.getMaxWait());
+            copyPoolSettings(primary, pool);
+            pools.put(replica.getName(), pool);
+        }
+        return pools;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!isReadOnlyTransaction() || replicas.isEmpty()) {
+            primaryConnections.incrementAndGet();
+            return primary.getConnection();
+        }
+        ReplicaPool replica = pickReplica();
+        if (replica == null) {
+            fallbackConnections.incrementAndGet();
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = replica.pool.getConnection();
+            replicaConnections.incrementAndGet();
+            return connection;
+        } catch (SQLException e) {
+            replica.healthy = false;
+            log.warn("副本 {} 取连接失败，回落主库: {}", replica.name, e.getMessage());
+            fallbackConnections.incrementAndGet();
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // 连接池使用配置的账号，不支持按调用方账号取连接
+        return getConnection();
+    }
+
+    /**
+     * 定期检测副本复制延迟，决定是否参与分流
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.check-interval-ms:5000}")
+    public void checkReplicas() {
+        for (ReplicaPool replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(2);
+                try (ResultSet rs = statement.executeQuery(lagQuery)) {
+                    long lag = rs.next() ? Math.round(rs.getDouble(1)) : -1;
+                    replica.lagMs = lag;
+                    replica.healthy = lag >= 0 && lag <= maxLagMs;
+                }
+            } catch (SQLException e) {
+                replica.lagMs = -1;
+                replica.healthy = false;
+                log.debug("副本 {} 延迟检测失败: {}", replica.name, e.getMessage());
+            }
+            if (wasHealthy != replica.healthy) {
+                log.warn("副本 {} {}，当前延迟 {}ms", replica.name,
+                        replica.healthy ? "恢复分流" : "暂停分流", replica.lagMs);
+            }
+        }
+    }
+
+    /**
+     * 各连接池（主库及副本），用于连接池指标
+     */
+    public Map<String, DruidDataSource> getPools() {
+        Map<String, DruidDataSource> pools = new LinkedHashMap<>();
+        pools.put(PRIMARY, primary);
+        replicas.forEach(r -> pools.put(r.name, r.pool));
+        return pools;
+    }
+
+    /**
+     * 副本延迟(毫秒)，检测失败为 -1
+     */
+    public Map<String, Long> getReplicaLags() {
+        Map<String, Long> lags = new LinkedHashMap<>();
+        replicas.forEach(r -> lags.put(r.name, r.lagMs));
+        return lags;
+    }
+
+    public long getPrimaryConnections() {
+        return primaryConnections.get();
+    }
+
+    public long getReplicaConnections() {
+        return replicaConnections.get();
+    }
+
+    public long getFallbackConnections() {
+        return fallbackConnections.get();
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(r -> r.pool.close());
+    }
+
+    /**
+     * 副本沿用主库的过滤器（stat、wall 等）和连接校验、空闲回收设置，连接数和等待时间按副本单独配置
+     */
+    private static void copyPoolSettings(DruidDataSource primary, DruidDataSource pool) {
+        List<String> filters = primary.getFilterClassNames();
+        if (!filters.isEmpty()) {
+            try {
+                pool.setFilters(String.join(",", filters));
+            } catch (SQLException e) {
+                throw new IllegalStateException("副本连接池过滤器初始化失败", e);
+            }
+        }
+        pool.setInitialSize(Math.min(primary.getInitialSize(), pool.getMaxActive()));
+        pool.setMinIdle(Math.min(primary.getMinIdle(), pool.getMaxActive()));
+        pool.setValidationQuery(primary.getValidationQuery() != null ? primary.getValidationQuery() : "SELECT 1");
+        pool.setTestWhileIdle(primary.isTestWhileIdle());
+        pool.setTestOnBorrow(primary.isTestOnBorrow());
+        pool.setTestOnReturn(primary.isTestOnReturn());
+        pool.setTimeBetweenEvictionRunsMillis(primary.getTimeBetweenEvictionRunsMillis());
+        pool.setMinEvictableIdleTimeMillis(primary.getMinEvictableIdleTimeMillis());
+        pool.setMaxEvictableIdleTimeMillis(primary.getMaxEvictableIdleTimeMillis());
+    }
+
+    private static boolean isReadOnlyTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private ReplicaPool pickReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            ReplicaPool replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private static class ReplicaPool {
+        final String name;
+        final DruidDataSource pool;
+        // 首次检测前不分流
+        volatile boolean healthy = false;
+        volatile long lagMs = -1;
+
+        ReplicaPool(String name, DruidDataSource pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+    }
+}
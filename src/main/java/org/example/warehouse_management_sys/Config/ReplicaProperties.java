@@ -0,0 +1,48 @@
+package org.example.warehouse_management_sys.Config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只读副本配置（app.datasource），未配置副本时所有请求走主库
+ */
+@Data
+@ConfigurationProperties("app.datasource")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * 可容忍的复制延迟，超过后该副本暂停分流，只读请求回落主库
+     */
+    private long maxLagMs = 1000;
+
+    /**
+     * 副本延迟检测间隔
+     */
+    private long checkIntervalMs = 5000;
+
+    /**
+     * 副本延迟查询（毫秒），返回 -1 表示不可用，默认适配 openGauss。
+     * WAL 接收进程不在时视为不可用（接收停滞时接收位置等于回放位置，不能按 0 计）；
+     * 已追平时按 0 计，否则按最后回放事务时间计算延迟。
+     * PostgreSQL 10+ 需改用 pg_stat_wal_receiver(status = 'streaming') 和 pg_last_wal_* 函数
+     */
+    private String lagQuery = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+            "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_get_wal_receiver() WHERE receiver_pid > 0) THEN -1 " +
+            "WHEN pg_last_xlog_receive_location() = pg_last_xlog_replay_location() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())) * 1000, -1) END";
+
+    @Data
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private int maxActive = 10;
+        private long maxWait = 1000;   // 副本取连接等待较短，超时即回落主库
+    }
+}
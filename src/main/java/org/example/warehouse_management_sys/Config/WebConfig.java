@@ -1,4 +1,8 @@
 package org.example.warehouse_management_sys.Config;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.warehouse_management_sys.Service.AuthTokenService;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
@@ -16,6 +20,19 @@ public class WebConfig implements WebMvcConfigurer {
                 .maxAge(3600);
     }
 
+    /**
+     * 接口令牌校验过滤器，只作用于 /api 接口，静态页面不拦截
+     */
+    @Bean
+    public FilterRegistrationBean<AuthTokenFilter> authTokenFilter(AuthTokenService authTokenService,
+                                                                   ObjectMapper objectMapper) {
+        FilterRegistrationBean<AuthTokenFilter> registration =
+                new FilterRegistrationBean<>(new AuthTokenFilter(authTokenService, objectMapper));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(1);
+        return registration;
+    }
+
     @Override
     public void addViewControllers(ViewControllerRegistry registry) {
         registry.addViewController("/").setViewName("forward:/index.html");
@@ -1,12 +1,16 @@
 package org.example.warehouse_management_sys.Controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.DTO.AlertBatchHandleDTO;
+import org.example.warehouse_management_sys.DTO.AlertQueryDTO;
 import org.example.warehouse_management_sys.Entity.StockAlert;
 import org.example.warehouse_management_sys.Service.AlertService;
 import org.example.warehouse_management_sys.Utils.Result;
 import org.springframework.web.bind.annotation.*;
 import javax.annotation.Resource;
+import javax.validation.Valid;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -21,6 +25,14 @@ public class AlertController {
         boolean success = alertService.handleAlert(alertId, handleRemark);
         return Result.success("预警处理成功", success);
     }
+
+    /**
+     * 批量处理预警：传 alertIds 按ID处理，否则按筛选条件处理全部匹配的未处理预警
+     */
+    @PostMapping("/handle/batch")
+    public Result<Map<String, Object>> handleAlerts(@Valid @RequestBody AlertBatchHandleDTO dto) {
+        return Result.success("批量处理完成", alertService.handleAlerts(dto));
+    }
     @GetMapping("/unhandled")
     public Result<List<StockAlert>> getUnhandledAlerts(
             @RequestParam(required = false) String alertType) {
@@ -28,15 +40,18 @@ public class AlertController {
         return Result.success(alerts);
     }
 
+    /**
+     * 分页查询预警，支持状态、类型、时间范围筛选，按 nextCursorTime/nextCursorId 翻页
+     */
     @GetMapping("/list")
-    public Result<List<StockAlert>> getAllAlerts() {
-        List<StockAlert> alerts = alertService.getAllAlerts();
-        return Result.success(alerts);
+    public Result<Map<String, Object>> getAlertPage(@Valid AlertQueryDTO query) {
+        return Result.success(alertService.getAlertPage(query));
     }
 
     @GetMapping("/material/{materialId}")
-    public Result<List<StockAlert>> getAlertsByMaterialId(@PathVariable String materialId) {
-        List<StockAlert> alerts = alertService.getAlertsByMaterialId(materialId);
-        return Result.success(alerts);
+    public Result<Map<String, Object>> getAlertsByMaterialId(@PathVariable String materialId,
+                                                             @Valid AlertQueryDTO query) {
+        query.setMaterialId(materialId);
+        return Result.success(alertService.getAlertPage(query));
     }
 }
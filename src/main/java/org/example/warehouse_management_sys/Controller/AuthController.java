@@ -1,13 +1,16 @@
 package org.example.warehouse_management_sys.Controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.Config.AuthTokenFilter;
 import org.example.warehouse_management_sys.DTO.LoginDTO;
 import org.example.warehouse_management_sys.Entity.Operator;
 import org.example.warehouse_management_sys.Service.AuthService;
+import org.example.warehouse_management_sys.Service.AuthTokenService;
+import org.example.warehouse_management_sys.Service.LoginThrottleService;
 import org.example.warehouse_management_sys.Utils.Result;
-import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.util.HashMap;
 import java.util.Map;
@@ -20,12 +23,27 @@ public class AuthController {
     @Resource
     private AuthService authService;
 
+    @Resource
+    private AuthTokenService authTokenService;
+
+    @Resource
+    private LoginThrottleService loginThrottleService;
+
     /**
      * 用户登录
      */
     @PostMapping("/login")
-    public Result<Map<String, Object>> login(@Valid @RequestBody LoginDTO loginDTO) {
-        Operator operator = authService.login(loginDTO);
+    public Result<Map<String, Object>> login(@Valid @RequestBody LoginDTO loginDTO,
+                                             HttpServletRequest request) {
+        if (!loginThrottleService.tryAcquire(loginDTO.getUsername(), request.getRemoteAddr())) {
+            return Result.error(429, "登录尝试过于频繁，请稍后再试");
+        }
+        Operator operator;
+        try {
+            operator = authService.login(loginDTO);
+        } catch (IllegalStateException e) {
+            return Result.error(503, e.getMessage());
+        }
 
         if (operator == null) {
             return Result.error("用户名或密码错误");
@@ -41,7 +59,7 @@ public class AuthController {
 
         Map<String, Object> result = new HashMap<>();
         result.put("userInfo", userInfo);
-        result.put("token", generateToken(operator.getOperatorId())); // 简单的token生成
+        result.put("token", authTokenService.issue(operator.getOperatorId()));
 
         return Result.success("登录成功", result);
     }
@@ -53,7 +71,11 @@ public class AuthController {
     public Result<Boolean> changePassword(
             @RequestParam String operatorId,
             @RequestParam String oldPassword,
-            @RequestParam String newPassword) {
+            @RequestParam String newPassword,
+            @RequestAttribute(AuthTokenFilter.OPERATOR_ID_ATTRIBUTE) String currentOperatorId) {
+        if (!currentOperatorId.equals(operatorId)) {
+            return Result.error(403, "只能修改本人密码");
+        }
         try {
             boolean success = authService.changePassword(operatorId, oldPassword, newPassword);
             return Result.success("密码修改成功", success);
@@ -67,19 +89,12 @@ public class AuthController {
 
     /**
      * 验证token/用户状态（用于前端验证登录状态）
+     * 令牌已由过滤器校验，这里只核对令牌所属操作员
      */
     @GetMapping("/validate")
-    public Result<Boolean> validate(@RequestParam String operatorId) {
-        boolean isValid = authService.validateOperator(operatorId);
+    public Result<Boolean> validate(@RequestParam(required = false) String operatorId,
+                                    @RequestAttribute(AuthTokenFilter.OPERATOR_ID_ATTRIBUTE) String currentOperatorId) {
+        boolean isValid = operatorId == null || operatorId.equals(currentOperatorId);
         return Result.success(isValid ? "用户有效" : "用户无效", isValid);
     }
-
-    /**
-     * 简单的token生成（生产环境应使用JWT等更安全的方案）
-     */
-    private String generateToken(String operatorId) {
-        return DigestUtils.md5DigestAsHex(
-                (operatorId + System.currentTimeMillis()).getBytes()
-        );
-    }
 }
\ No newline at end of file
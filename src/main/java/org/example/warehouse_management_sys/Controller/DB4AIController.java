@@ -4,10 +4,22 @@ package org.example.warehouse_management_sys.Controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.example.warehouse_management_sys.DTO.AnomalyDetectionDTO;
+import org.example.warehouse_management_sys.DTO.BacktestReportDTO;
 import org.example.warehouse_management_sys.DTO.DB4AIPredictDTO;
+import org.example.warehouse_management_sys.DTO.PurchasePlanDTO;
+import org.example.warehouse_management_sys.DTO.StockoutRiskDTO;
+import org.example.warehouse_management_sys.Entity.PredictionJob;
+import org.example.warehouse_management_sys.Service.ClusterModelRegistry;
 import org.example.warehouse_management_sys.Service.DB4AIService;
+import org.example.warehouse_management_sys.Service.ForecastBacktestService;
+import org.example.warehouse_management_sys.Service.InventoryClassificationService;
+import org.example.warehouse_management_sys.Service.MaterialStatsService;
+import org.example.warehouse_management_sys.Service.DataRetentionService;
+import org.example.warehouse_management_sys.Service.ModelRetrainingService;
+import org.example.warehouse_management_sys.Service.PredictionJobService;
+import org.example.warehouse_management_sys.Service.PurchasePlanService;
+import org.example.warehouse_management_sys.Service.StockoutSimulationService;
 import org.example.warehouse_management_sys.Utils.Result;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
 import javax.annotation.Resource;
 import java.math.BigDecimal;
@@ -25,34 +37,93 @@ public class DB4AIController {
     @Resource
     private DB4AIService db4aiService;
 
+    @Resource
+    private PredictionJobService predictionJobService;
+
+    @Resource
+    private ClusterModelRegistry clusterModelRegistry;
+
+    @Resource
+    private PurchasePlanService purchasePlanService;
+
+    @Resource
+    private StockoutSimulationService stockoutSimulationService;
+
+    @Resource
+    private ForecastBacktestService forecastBacktestService;
+
+    @Resource
+    private ModelRetrainingService modelRetrainingService;
+
+    @Resource
+    private DataRetentionService dataRetentionService;
+
+    @Resource
+    private MaterialStatsService materialStatsService;
+
+    @Resource
+    private InventoryClassificationService inventoryClassificationService;
+
     /**
-     * 手动触发库存预测
+     * 批量物料统计单次最多物料数
+     */
+    private static final int MAX_BATCH_MATERIALS = 500;
+
+    /**
+     * 手动触发库存预测（异步任务，返回任务ID供前端轮询）
      */
     @PostMapping("/predict-stock")
     public Map<String, Object> predictStock(@RequestParam(defaultValue = "false") boolean forceMock) {
         Map<String, Object> result = new HashMap<>();
         try {
-                Map<String, Object> predictionResult = db4aiService.generateStockPredictions();
-
-                if ("200".equals(predictionResult.get("code").toString())) {
-                    List<DB4AIPredictDTO> predictions = db4aiService.getPurchaseRecommendations();
-                    result.put("code", 200);
-                    result.put("message", predictionResult.get("message"));
-                    result.put("data", predictions);
-                    result.put("mock", predictions.isEmpty() || predictions.get(0).getDayNum() == null);
-                    result.put("count", predictions.size());
-                    result.put("predictionCount", predictionResult.get("predictionCount"));
-                    result.put("historyCount", predictionResult.get("historyCount"));
-                }
-
+            PredictionJob job = predictionJobService.submit("手动");
+            result.put("code", 200);
+            result.put("message", "预测任务已提交");
+            result.put("jobId", job.getJobId());
+            result.put("data", job);
         } catch (Exception e) {
-            log.error("库存预测失败", e);
+            log.error("提交库存预测任务失败", e);
             result.put("code", 500);
             result.put("message", "预测失败: " + e.getMessage());
         }
         return result;
     }
 
+    /**
+     * 查询预测任务进度
+     */
+    @GetMapping("/prediction-jobs/{jobId}")
+    public Result<PredictionJob> getPredictionJob(@PathVariable String jobId) {
+        PredictionJob job = predictionJobService.getJob(jobId);
+        if (job == null) {
+            return Result.error(404, "预测任务不存在");
+        }
+        return Result.success(job);
+    }
+
+    /**
+     * 查询预测任务历史
+     */
+    @GetMapping("/prediction-jobs")
+    public Result<List<PredictionJob>> getPredictionJobs(@RequestParam(defaultValue = "20") Integer limit) {
+        return Result.success(predictionJobService.getJobHistory(limit));
+    }
+
+    /**
+     * 取消预测任务（存储过程执行阶段不可中断，取消在该阶段结束后生效）
+     */
+    @PostMapping("/prediction-jobs/{jobId}/cancel")
+    public Result<Boolean> cancelPredictionJob(@PathVariable String jobId) {
+        boolean cancelled = predictionJobService.cancel(jobId);
+        if (!cancelled) {
+            return Result.error(400, "任务不存在或已结束");
+        }
+        PredictionJob job = predictionJobService.getJob(jobId);
+        if (job != null && Boolean.FALSE.equals(job.getCancellable())) {
+            return Result.success("已请求取消，存储过程执行阶段不可中断，将在其结束后取消", true);
+        }
+        return Result.success("已请求取消预测任务", true);
+    }
 
     /**
      * 获取预测详情和日志
@@ -68,9 +139,202 @@ public class DB4AIController {
     @GetMapping("/prediction-logs")
     public Map<String, Object> getPredictionLogs(
             @RequestParam(required = false) String batchId,
+            @RequestParam(required = false) Long afterLogId,
             @RequestParam(defaultValue = "100") Integer limit) {
-        return db4aiService.getPredictionLogs(batchId, limit);
+        return db4aiService.getPredictionLogs(batchId, afterLogId, limit);
+    }
+    /**
+     * 获取采购计划（EOQ采购数量，按供应商分组的草稿单）
+     */
+    @GetMapping("/purchase-plan")
+    public Map<String, Object> getPurchasePlan(@RequestParam(defaultValue = "false") boolean refresh) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            PurchasePlanDTO plan = purchasePlanService.getPurchasePlan(refresh);
+            result.put("code", 200);
+            result.put("message", "查询成功");
+            result.put("data", plan);
+        } catch (Exception e) {
+            log.error("生成采购计划失败", e);
+            result.put("code", 500);
+            result.put("message", "查询失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 断货风险模拟（蒙特卡洛），不传物料ID时模拟全部物料
+     */
+    @GetMapping("/stockout-risk")
+    public Map<String, Object> getStockoutRisk(@RequestParam(required = false) String materialId,
+                                               @RequestParam(required = false) Integer scenarios,
+                                               @RequestParam(required = false) Long seed) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            List<StockoutRiskDTO> risks = stockoutSimulationService.simulate(materialId, scenarios, seed);
+            result.put("code", 200);
+            result.put("message", "模拟完成");
+            result.put("data", risks);
+            result.put("total", risks.size());
+        } catch (Exception e) {
+            log.error("断货风险模拟失败", e);
+            result.put("code", 500);
+            result.put("message", "模拟失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 运行预测回测（source=synthetic 时使用本地生成的模拟数据）
+     */
+    @PostMapping("/backtest")
+    public Map<String, Object> runBacktest(@RequestParam(required = false) String engine,
+                                           @RequestParam(defaultValue = "db") String source,
+                                           @RequestParam(required = false) Integer historyDays,
+                                           @RequestParam(required = false) Integer materials,
+                                           @RequestParam(required = false) Long seed) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            BacktestReportDTO report = forecastBacktestService.runBacktest(engine, source, historyDays, materials, seed);
+            result.put("code", 200);
+            result.put("message", "回测完成");
+            result.put("data", report);
+        } catch (IllegalArgumentException e) {
+            result.put("code", 400);
+            result.put("message", "参数错误: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("预测回测失败", e);
+            result.put("code", 500);
+            result.put("message", "回测失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 查询最近的回测报告
+     */
+    @GetMapping("/backtest-reports")
+    public Map<String, Object> getBacktestReports(@RequestParam(defaultValue = "20") int limit) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            List<Map<String, Object>> reports = forecastBacktestService.getRecentReports(limit);
+            result.put("code", 200);
+            result.put("message", "查询成功");
+            result.put("data", reports);
+        } catch (Exception e) {
+            log.error("查询回测报告失败", e);
+            result.put("code", 500);
+            result.put("message", "查询失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 手动触发漂移检测和增量重训，在重训线程池中异步执行
+     */
+    @PostMapping("/model-maintenance")
+    public Map<String, Object> runModelMaintenance() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            if (modelRetrainingService.submitMaintenance()) {
+                result.put("code", 200);
+                result.put("message", "模型维护已提交，完成后可查询结果");
+            } else {
+                result.put("code", 409);
+                result.put("message", "模型维护正在进行，请稍后查询结果");
+            }
+        } catch (Exception e) {
+            log.error("提交模型维护失败", e);
+            result.put("code", 500);
+            result.put("message", "提交模型维护失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 查询模型维护状态和最近一次结果
+     */
+    @GetMapping("/model-maintenance")
+    public Map<String, Object> getModelMaintenance() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 200);
+        result.put("running", modelRetrainingService.isRunning());
+        result.put("data", modelRetrainingService.getLastResult());
+        return result;
+    }
+
+    /**
+     * 手动执行一轮过期数据归档
+     */
+    @PostMapping("/retention/run")
+    public Map<String, Object> runRetention() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.put("code", 200);
+            result.put("message", "归档执行完成");
+            result.put("data", dataRetentionService.runRetention());
+        } catch (Exception e) {
+            log.error("数据归档失败", e);
+            result.put("code", 500);
+            result.put("message", "数据归档失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 获取归档指标和检查点
+     */
+    @GetMapping("/retention/metrics")
+    public Map<String, Object> getRetentionMetrics() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.put("code", 200);
+            result.put("message", "查询成功");
+            result.put("data", dataRetentionService.getMetrics());
+        } catch (Exception e) {
+            log.error("获取归档指标失败", e);
+            result.put("code", 500);
+            result.put("message", "获取归档指标失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 获取ABC/XYZ分类矩阵
+     */
+    @GetMapping("/classification")
+    public Map<String, Object> getClassification() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.put("code", 200);
+            result.put("message", "查询成功");
+            result.put("data", inventoryClassificationService.getSummary());
+        } catch (Exception e) {
+            log.error("查询ABC/XYZ分类失败", e);
+            result.put("code", 500);
+            result.put("message", "查询失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 手动刷新ABC/XYZ分类
+     */
+    @PostMapping("/classification/refresh")
+    public Map<String, Object> refreshClassification() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.put("code", 200);
+            result.put("message", "分类完成");
+            result.put("data", inventoryClassificationService.refreshClassification());
+        } catch (Exception e) {
+            log.error("ABC/XYZ分类失败", e);
+            result.put("code", 500);
+            result.put("message", "分类失败: " + e.getMessage());
+        }
+        return result;
     }
+
     /**
      * 获取未来2周采购推荐
      */
@@ -78,11 +342,14 @@ public class DB4AIController {
     public Map<String, Object> getPurchaseRecommendations() {
         Map<String, Object> result = new HashMap<>();
         try {
-            List<DB4AIPredictDTO> recommendations = db4aiService.getPurchaseRecommendations();
+            Map<String, Object> cached = db4aiService.getPurchaseRecommendationsWithCacheStatus();
+            @SuppressWarnings("unchecked")
+            List<DB4AIPredictDTO> recommendations = (List<DB4AIPredictDTO>) cached.get("data");
             result.put("code", 200);
             result.put("message", "查询成功");
             result.put("data", recommendations);
             result.put("total", recommendations.size());
+            result.put("cache", cached.get("cache"));
 
             boolean isMock = recommendations.isEmpty() ||
                     recommendations.stream().anyMatch(dto -> dto.getDayNum() == null);
@@ -105,8 +372,7 @@ public class DB4AIController {
     @GetMapping("/anomaly-records")
     public Map<String, Object> getAnomalyRecords(
             @RequestParam(required = false) String startDate,
-            @RequestParam(required = false) String endDate,
-            @RequestParam(defaultValue = "false") boolean mock) {
+            @RequestParam(required = false) String endDate) {
         Map<String, Object> result = new HashMap<>();
         try {
             LocalDate start = startDate != null ?
@@ -116,12 +382,11 @@ public class DB4AIController {
                     LocalDate.parse(endDate, DateTimeFormatter.ISO_DATE) :
                     LocalDate.now();
 
-            List<AnomalyDetectionDTO> anomalies = db4aiService.getAnomalyRecords(start, end, mock);
+            List<AnomalyDetectionDTO> anomalies = db4aiService.getAnomalyRecords(start, end);
             result.put("code", 200);
             result.put("message", "查询成功");
             result.put("data", anomalies);
             result.put("total", anomalies.size());
-            result.put("mock", mock);
             result.put("period", start + " 至 " + end);
 
         } catch (Exception e) {
@@ -136,10 +401,10 @@ public class DB4AIController {
      * 获取系统状态和诊断信息
      */
     @GetMapping("/system-status")
-    public Map<String, Object> getSystemStatus() {
+    public Map<String, Object> getSystemStatus(@RequestParam(defaultValue = "false") boolean exact) {
         Map<String, Object> result = new HashMap<>();
         try {
-            Map<String, Object> status = db4aiService.getSystemStatus();
+            Map<String, Object> status = db4aiService.getSystemStatus(exact);
             result.put("code", 200);
             result.put("message", "系统状态获取成功");
             result.put("data", status);
@@ -167,14 +432,7 @@ public class DB4AIController {
     public Map<String, Object> getMaterialStats(@PathVariable String materialId) {
         Map<String, Object> result = new HashMap<>();
         try {
-            String sql = "SELECT " +
-                    "AVG(quantity::double precision) AS avg_quantity, " +
-                    "STDDEV(quantity::double precision) AS std_quantity, " +
-                    "COUNT(*) AS record_count " +
-                    "FROM inout_record " +
-                    "WHERE material_id = ? AND inout_type = '出库'";
-
-            Map<String, Object> stats = jdbcTemplate.queryForMap(sql, materialId);
+            Map<String, Object> stats = materialStatsService.getStats(List.of(materialId)).get(materialId);
 
             result.put("code", 200);
             result.put("message", "查询成功");
@@ -194,32 +452,49 @@ public class DB4AIController {
         return result;
     }
 
-
+    /**
+     * 批量获取物料出库统计及聚类（出入库页面一次请求取回所有记录涉及的物料）
+     */
+    @PostMapping("/material-stats/batch")
+    public Map<String, Object> getMaterialStatsBatch(@RequestBody List<String> materialIds) {
+        Map<String, Object> result = new HashMap<>();
+        if (materialIds == null || materialIds.isEmpty() || materialIds.size() > MAX_BATCH_MATERIALS) {
+            result.put("code", 400);
+            result.put("message", "物料ID数量需在1到" + MAX_BATCH_MATERIALS + "之间");
+            return result;
+        }
+        try {
+            ClusterModelRegistry.ClusterModel model = clusterModelRegistry.getModel();
+            result.put("code", 200);
+            result.put("message", "查询成功");
+            result.put("data", materialStatsService.getStats(materialIds));
+            // 返回聚类中心，前端可按记录数量就近分组，无需逐条调用 test-cluster
+            result.put("centroids", model == null ? new double[0] : model.getCentroids());
+        } catch (Exception e) {
+            log.error("批量获取物料统计失败", e);
+            result.put("code", 500);
+            result.put("message", "查询失败: " + e.getMessage());
+        }
+        return result;
+    }
 
     /**
-     * 获取聚类分析结果
+     * 获取聚类分析结果（来自内存模型的缓存元数据）
      */
     @GetMapping("/cluster-analysis")
     public Map<String, Object> getClusterAnalysis() {
         Map<String, Object> result = new HashMap<>();
         try {
-            // 尝试从视图获取聚类分析
-            String sql = "SELECT " +
-                    "cluster, " +
-                    "COUNT(*) AS record_count, " +
-                    "ROUND(AVG(quantity)::numeric, 2) AS avg_quantity, " +
-                    "MIN(quantity) AS min_quantity, " +
-                    "MAX(quantity) AS max_quantity " +
-                    "FROM v_anomaly_inout_loose_4517 " +
-                    "WHERE cluster IS NOT NULL " +
-                    "GROUP BY cluster " +
-                    "ORDER BY cluster";
-
-            List<Map<String, Object>> clusters = jdbcTemplate.queryForList(sql);
+            ClusterModelRegistry.ClusterModel model = clusterModelRegistry.getModel();
+            if (model == null) {
+                model = clusterModelRegistry.refresh();
+            }
 
             result.put("code", 200);
             result.put("message", "查询成功");
-            result.put("data", clusters);
+            result.put("data", model.getClusterStats());
+            result.put("sampleCount", model.getSampleCount());
+            result.put("trainTime", model.getTrainTime());
         } catch (Exception e) {
             log.error("获取聚类分析失败", e);
             result.put("code", 500);
@@ -230,9 +505,7 @@ public class DB4AIController {
 
 
     /**
-     * 测试聚类预测 - 修复参数接收问题
-     * 修改前：@RequestParam BigDecimal quantity
-     * 修改后：@RequestBody Map<String, Object> request
+     * 测试聚类预测：按内存中的质心做最近邻分配
      */
     @PostMapping("/test-cluster")
     public Result<Map<String, Object>> testClusterPrediction(@RequestBody Map<String, Object> request) {
@@ -252,13 +525,16 @@ public class DB4AIController {
                 return Result.error(400, "参数 quantity 格式错误");
             }
 
-            // 模拟聚类预测结果（实际应调用业务逻辑）
-            Map<String, Object> result = new HashMap<>();
-
-            // 随机生成聚类分组 (0-2)
-            int predictedCluster = (int) (Math.random() * 3);
+            // 预测和质心取自同一份模型快照，避免中途刷新导致簇编号越界
+            ClusterModelRegistry.ClusterModel model = clusterModelRegistry.getModel();
+            if (model == null || model.getClusterCount() == 0) {
+                return Result.error(503, "聚类模型尚未加载");
+            }
+            int predictedCluster = model.nearest(quantity.doubleValue());
 
+            Map<String, Object> result = new HashMap<>();
             result.put("predictedCluster", predictedCluster);
+            result.put("centroid", model.getCentroid(predictedCluster));
             result.put("quantity", quantity);
             result.put("message", "聚类预测成功");
 
@@ -270,8 +546,4 @@ public class DB4AIController {
             return Result.error(500, "聚类预测失败: " + e.getMessage());
         }
     }
-
-
-    @Resource
-    private JdbcTemplate jdbcTemplate;
 }
@@ -56,8 +56,9 @@ public class MaterialController {
     }
 
     @GetMapping("/list")
-    public Result<List<Material>> getAllMaterials() {
-        List<Material> list = materialService.getAllMaterials();
+    public Result<List<Material>> getAllMaterials(@RequestParam(required = false) String abcClass,
+                                                  @RequestParam(required = false) String xyzClass) {
+        List<Material> list = materialService.getAllMaterials(abcClass, xyzClass);
         return Result.success(list);
     }
 
@@ -0,0 +1,36 @@
+package org.example.warehouse_management_sys.Controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.Service.SlowQueryService;
+import org.example.warehouse_management_sys.Utils.Result;
+import org.springframework.web.bind.annotation.*;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/slow-queries")
+public class SlowQueryController {
+
+    @Resource
+    private SlowQueryService slowQueryService;
+
+    /**
+     * 最近的慢语句（含绑定参数和采样的执行计划）及当前阈值设置
+     */
+    @GetMapping
+    public Result<Map<String, Object>> getSlowQueries(@RequestParam(defaultValue = "50") int limit) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("settings", slowQueryService.getSettings());
+        data.put("list", slowQueryService.getRecent(limit));
+        return Result.success(data);
+    }
+
+    @DeleteMapping
+    public Result<Boolean> clearSlowQueries() {
+        slowQueryService.clear();
+        log.info("清空慢语句记录");
+        return Result.success("已清空", true);
+    }
+}
@@ -23,7 +23,9 @@ public class StatisticsController {
     public Result<List<StatisticsDTO>> getMonthlyStatistics(@Valid @RequestBody MonthlyQueryDTO dto) {
         List<StatisticsDTO> stats = statisticsService.getMonthlyStatistics(
                 dto.getYear(),
-                dto.getMonth()
+                dto.getMonth(),
+                dto.getAbcClass(),
+                dto.getXyzClass()
         );
         return Result.success(stats);
     }
@@ -0,0 +1,25 @@
+package org.example.warehouse_management_sys.DTO;
+
+import lombok.Data;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class AlertBatchHandleDTO {
+
+    // 按ID处理；为空时按下方筛选条件处理全部匹配的未处理预警
+    @Size(max = 1000, message = "单次最多处理1000条预警")
+    private List<Integer> alertIds;
+
+    // 筛选条件（至少提供一项）
+    private String alertType;
+    private String materialId;
+    private String batchId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+
+    @NotBlank(message = "处理说明不能为空")
+    private String handleRemark;
+}
@@ -0,0 +1,30 @@
+package org.example.warehouse_management_sys.DTO;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.time.LocalDateTime;
+
+@Data
+public class AlertQueryDTO {
+
+    private String status;     // 未处理 / 已处理，为空表示全部
+    private String alertType;
+    private String materialId;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime startTime;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime endTime;
+
+    // 键集分页游标：上一页最后一条的预警时间和ID
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime cursorTime;
+    private Integer cursorId;
+
+    @Min(value = 1, message = "每页条数不能小于1")
+    @Max(value = 200, message = "每页条数不能大于200")
+    private Integer pageSize = 50;
+}
@@ -0,0 +1,34 @@
+package org.example.warehouse_management_sys.DTO;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class BacktestReportDTO {
+    private String engine;            // 预测引擎
+    private String source;            // 数据来源：db / synthetic
+    private Integer materialCount;
+    private Integer historyDays;
+    private Integer trainDays;        // 每个截止点使用的训练窗口
+    private Integer horizonDays;      // 预测天数
+    private Integer stepDays;         // 截止点滚动步长
+    private Integer cutoffCount;      // 参与评估的截止点总数
+    private BigDecimal mape;          // 平均绝对百分比误差（%）
+    private BigDecimal bias;          // 偏差（%），正数表示高估
+    private Long loadMillis;          // 数据加载耗时
+    private Long wallMillis;          // 回测计算耗时
+    private Long rowsPerSecond;       // 每秒回放的日数据点
+    private Long memoryBytes;         // 回测期间堆内存增量
+    private LocalDateTime runTime;
+    private List<MaterialAccuracy> materials; // 误差最大的物料
+
+    @Data
+    public static class MaterialAccuracy {
+        private String materialId;
+        private Integer cutoffs;
+        private BigDecimal mape;
+        private BigDecimal bias;
+    }
+}
@@ -15,5 +15,11 @@ public class MonthlyQueryDTO {
     @Min(value = 1, message = "月份必须在1-12之间")
     @Max(value = 12, message = "月份必须在1-12之间")
     private Integer month;
+
+    @Pattern(regexp = "[ABCabc]?", message = "ABC分类只能是A、B或C")
+    private String abcClass;
+
+    @Pattern(regexp = "[XYZxyz]?", message = "XYZ分类只能是X、Y或Z")
+    private String xyzClass;
 }
 
@@ -0,0 +1,43 @@
+package org.example.warehouse_management_sys.DTO;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class PurchasePlanDTO {
+    private String batchId;              // 对应的预测批次
+    private LocalDateTime generateTime;
+    private Integer lineCount;
+    private BigDecimal totalAmount;
+    private List<SupplierOrder> orders;  // 按供应商分组的采购草稿单
+
+    @Data
+    public static class SupplierOrder {
+        private String supplierId;
+        private String supplierName;
+        private BigDecimal totalAmount;
+        private List<PlanLine> lines;
+    }
+
+    @Data
+    public static class PlanLine {
+        private String materialId;
+        private String materialName;
+        private String unit;
+        private String supplierId;
+        private String supplierName;
+        private BigDecimal currentStock;
+        private BigDecimal predictedStock;
+        private BigDecimal safeStockMin;
+        private BigDecimal safeStockMax;
+        private BigDecimal targetStock;   // 补货目标库存
+        private BigDecimal shortfall;     // 预测缺口
+        private BigDecimal annualDemand;  // 年化出库需求
+        private BigDecimal eoq;           // 经济订货批量
+        private BigDecimal orderQuantity; // 建议采购数量
+        private BigDecimal unitPrice;
+        private BigDecimal amount;
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.warehouse_management_sys.DTO;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class SlowQueryDTO {
+    private Long seq;
+    private String source;        // mybatis / jdbc
+    private String statement;     // Mapper语句ID 或 业务类.方法
+    private String sql;
+    private List<String> parameters;
+    private Long elapsedMs;
+    private Long thresholdMs;
+    private Boolean success;
+    private String thread;
+    private LocalDateTime captureTime;
+    private String plan;          // 采样的执行计划
+}
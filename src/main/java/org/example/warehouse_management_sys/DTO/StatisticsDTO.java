@@ -15,4 +15,6 @@ public class StatisticsDTO {
     private BigDecimal netChange;
     private Integer recordCount;
     private BigDecimal avgQuantity;  // 平均出入库数量
+    private String abcClass;         // ABC分类
+    private String xyzClass;         // XYZ分类
 }
@@ -0,0 +1,17 @@
+package org.example.warehouse_management_sys.DTO;
+
+import lombok.Data;
+import java.math.BigDecimal;
+
+@Data
+public class StockoutRiskDTO {
+    private String materialId;
+    private String materialName;
+    private BigDecimal currentStock;
+    private Integer horizonDays;            // 模拟天数
+    private Integer scenarios;              // 模拟场景数
+    private BigDecimal stockoutProbability; // 断货概率
+    private BigDecimal expectedShortfall;   // 期望缺货量
+    private BigDecimal meanDemand;          // 期间平均需求
+    private BigDecimal p95Demand;           // 期间需求95分位
+}
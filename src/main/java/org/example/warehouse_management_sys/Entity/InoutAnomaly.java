@@ -0,0 +1,21 @@
+package org.example.warehouse_management_sys.Entity;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class InoutAnomaly {
+    private String recordId;
+    private String materialId;
+    private String inoutType;
+    private BigDecimal quantity;
+    private BigDecimal zScore;
+    private BigDecimal avgQuantity;  // 打分时的历史均值
+    private BigDecimal stdQuantity;  // 打分时的历史标准差
+    private Integer sampleCount;     // 打分时的历史样本数
+    private Integer cluster;         // K-means聚类结果
+    private String anomalyReason;
+    private LocalDateTime operationTime;
+    private LocalDateTime detectTime;
+}
@@ -17,9 +17,11 @@ public class Material {
     private BigDecimal currentStock;
     private BigDecimal unitPrice;
     private String supplierId;        // 更新：改为供应商ID
-    private String supplierName;      // 关联查询字段
+    private String supplierName;      // 供应商目录补充字段
     private String status;
     private LocalDateTime createTime;
     private LocalDateTime updateTime;
     private String stockStatus; // 库存状态（视图字段）
+    private String abcClass;    // ABC分类（关联查询字段）
+    private String xyzClass;    // XYZ分类（关联查询字段）
 }
\ No newline at end of file
@@ -13,4 +13,5 @@ public class Operator {
     private String status;
     private LocalDateTime createTime;
     private String password;  // 新增密码字段
+    private Integer statusVersion; // 状态版本，改密/停用时递增，令牌随之失效
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package org.example.warehouse_management_sys.Entity;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 预测任务。运行期字段由预测线程写入、HTTP线程轮询读取，声明为 volatile 保证进度及时可见
+ */
+@Data
+public class PredictionJob {
+    private String jobId;
+    private String triggerSource;  // 触发来源：手动、定时任务
+    private volatile String status;         // 排队中、运行中、已完成、失败、已取消
+    private volatile Integer progress;      // 进度百分比
+    private volatile String stage;          // 当前阶段
+    private volatile Boolean cancellable;   // 当前阶段能否取消，存储过程执行期间为否（仅运行期，不持久化）
+    private volatile String message;
+    private volatile String batchId;        // 对应的预测批次
+    private volatile Integer predictionCount;
+    private LocalDateTime submitTime;
+    private volatile LocalDateTime startTime;
+    private volatile LocalDateTime endTime;
+}
@@ -17,4 +17,6 @@ public class StockAlert {
     private LocalDateTime handleTime;
     private String handleRemark;
     private String alertDesc; // 预警描述（计算字段）
+    private String batchId; // 预测批次号（非预测预警为空）
+    private String source;  // 来源：存储过程 / 实时评估
 }
\ No newline at end of file
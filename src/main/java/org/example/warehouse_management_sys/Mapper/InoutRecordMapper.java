@@ -13,6 +13,9 @@ public interface InoutRecordMapper {
     // 插入出入库记录
     int insert(InoutRecord record);
 
+    // 按单据号查询（存储过程写入后回读操作时间和变动后库存）
+    InoutRecord selectById(@Param("recordId") String recordId);
+
     // 查询物料的出入库历史
     List<InoutRecord> selectByMaterialId(@Param("materialId") String materialId);
 
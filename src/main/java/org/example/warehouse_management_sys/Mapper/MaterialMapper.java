@@ -28,11 +28,13 @@ public interface MaterialMapper {
     // 根据ID查询物料
     Material selectById(@Param("materialId") String materialId);
 
-    // 查询所有物料（含库存状态和供应商信息）
-    List<Material> selectAllWithStatus();
+    // 查询所有物料（含库存状态，可按ABC/XYZ分类筛选）
+    List<Material> selectAllWithStatus(@Param("abcClass") String abcClass,
+                                       @Param("xyzClass") String xyzClass);
 
-    // 模糊查询物料
-    List<Material> selectByKeyword(@Param("keyword") String keyword);
+    // 模糊查询物料（supplierIds 为名称匹配关键字的供应商）
+    List<Material> selectByKeyword(@Param("keyword") String keyword,
+                                   @Param("supplierIds") List<String> supplierIds);
 
     // 查询低库存物料
     List<Material> selectLowStock();
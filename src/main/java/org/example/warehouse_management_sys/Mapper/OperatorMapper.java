@@ -4,16 +4,17 @@ import org.apache.ibatis.annotations.Mapper;
 import org.example.warehouse_management_sys.Entity.Operator;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 @Mapper
 public interface OperatorMapper {
-    // 根据操作员ID或用户名和密码查询
-    Operator selectByLogin(@Param("username") String username,
-                           @Param("password") String password);
+    // 根据操作员ID或用户名查询（登录）
+    List<Operator> selectByUsername(@Param("username") String username);
 
     // 根据ID查询
     Operator selectById(String operatorId);
 
-    // 更新密码
+    // 更新密码（同时递增状态版本，已签发的令牌失效）
     int updatePassword(@Param("operatorId") String operatorId,
                        @Param("newPassword") String newPassword);
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package org.example.warehouse_management_sys.Mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.example.warehouse_management_sys.Entity.PredictionJob;
+
+import java.util.List;
+@Mapper
+public interface PredictionJobMapper {
+
+    // 插入预测任务
+    int insert(PredictionJob job);
+
+    // 更新任务状态和结果
+    int update(PredictionJob job);
+
+    // 根据ID查询任务
+    PredictionJob selectById(@Param("jobId") String jobId);
+
+    // 查询最近N个任务
+    List<PredictionJob> selectRecent(@Param("limit") Integer limit);
+}
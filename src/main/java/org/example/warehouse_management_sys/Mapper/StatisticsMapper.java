@@ -9,9 +9,11 @@ import java.util.Map;
 @Mapper
 public interface StatisticsMapper {
 
-    // 月度出入库统计
+    // 月度出入库统计（可按ABC/XYZ分类筛选）
     List<StatisticsDTO> monthlyStatistics(@Param("year") Integer year,
-                                          @Param("month") Integer month);
+                                          @Param("month") Integer month,
+                                          @Param("abcClass") String abcClass,
+                                          @Param("xyzClass") String xyzClass);
 
     // 按类别统计流量
     List<StatisticsDTO> categoryFlowStatistics(@Param("startDate") String startDate,
@@ -2,6 +2,8 @@ package org.example.warehouse_management_sys.Mapper;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.example.warehouse_management_sys.DTO.AlertBatchHandleDTO;
+import org.example.warehouse_management_sys.DTO.AlertQueryDTO;
 import org.example.warehouse_management_sys.Entity.StockAlert;
 
 import java.util.List;
@@ -11,16 +13,26 @@ public interface StockAlertMapper {
     // 插入预警记录
     int insert(StockAlert alert);
 
+    // 批量插入预警记录
+    int insertBatch(@Param("alerts") List<StockAlert> alerts);
+
+    // 根据ID查询预警
+    StockAlert selectById(@Param("alertId") Integer alertId);
+
     // 查询未处理的预警
     List<StockAlert> selectUnhandled(@Param("alertType") String alertType);
 
-    // 查询所有预警
-    List<StockAlert> selectAll();
+    // 分页查询预警（键集分页，limit 为本次取数条数）
+    List<StockAlert> selectPage(@Param("query") AlertQueryDTO query,
+                                @Param("limit") int limit);
 
     // 处理预警
     int handleAlert(@Param("alertId") Integer alertId,
                     @Param("handleRemark") String handleRemark);
 
-    // 根据物料ID查询预警
-    List<StockAlert> selectByMaterialId(@Param("materialId") String materialId);
+    // 批量处理预警，返回实际处理的预警
+    List<StockAlert> handleBatch(@Param("dto") AlertBatchHandleDTO dto);
+
+    // 查询指定ID预警的状态
+    List<StockAlert> selectStatusByIds(@Param("alertIds") List<Integer> alertIds);
 }
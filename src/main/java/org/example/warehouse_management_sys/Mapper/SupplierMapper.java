@@ -24,12 +24,6 @@ public interface SupplierMapper {
     // 查询所有供应商
     List<Supplier> selectAll();
 
-    // 查询合作中的供应商
-    List<Supplier> selectActive();
-
-    // 模糊查询供应商
-    List<Supplier> selectByKeyword(@Param("keyword") String keyword);
-
     // 更新供应商状态
     int updateStatus(@Param("supplierId") String supplierId,
                      @Param("status") String status);
@@ -2,7 +2,13 @@
 package org.example.warehouse_management_sys.Scheduler;
 
 import lombok.extern.slf4j.Slf4j;
-import org.example.warehouse_management_sys.Service.DB4AIService;
+import org.example.warehouse_management_sys.Entity.PredictionJob;
+import org.example.warehouse_management_sys.Service.AnomalyScoringService;
+import org.example.warehouse_management_sys.Service.DataRetentionService;
+import org.example.warehouse_management_sys.Service.InventoryClassificationService;
+import org.example.warehouse_management_sys.Service.ModelRetrainingService;
+import org.example.warehouse_management_sys.Service.PredictionJobService;
+import org.example.warehouse_management_sys.Service.PurchasePlanService;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -15,7 +21,22 @@ import javax.annotation.Resource;
 public class DB4AIScheduler {
 
     @Resource
-    private DB4AIService db4aiService;
+    private PredictionJobService predictionJobService;
+
+    @Resource
+    private AnomalyScoringService anomalyScoringService;
+
+    @Resource
+    private PurchasePlanService purchasePlanService;
+
+    @Resource
+    private ModelRetrainingService modelRetrainingService;
+
+    @Resource
+    private InventoryClassificationService inventoryClassificationService;
+
+    @Resource
+    private DataRetentionService dataRetentionService;
 
     /**
      * 每周日22:00执行 - 未来2周库存预测 & 生成采购清单
@@ -25,22 +46,25 @@ public class DB4AIScheduler {
     public void weeklyStockPredictionAndPurchaseList() {
         log.info("【自动任务】开始执行每周库存预测和采购清单生成...");
         try {
-            // 1. 执行库存预测
-            var predictionResult = db4aiService.generateStockPredictions();
-            if ("200".equals(predictionResult.get("code").toString())) {
-                // 2. 获取采购推荐清单
-                var purchaseList = db4aiService.getPurchaseRecommendations();
-                // 3. 筛选需要采购的物料
-                var needPurchaseItems = purchaseList.stream()
-                        .filter(p -> p.getPredictedStock().compareTo(p.getSafeStockMin()) < 0)
-                        .toList();
-                // 4. 记录日志
-                log.info("【自动任务】预测完成，需要采购 {} 个物料", needPurchaseItems.size());
+            // 1. 提交异步预测任务（已有进行中的任务时合并）
+            PredictionJob job = predictionJobService.submit("定时任务");
+            predictionJobService.getCompletion(job.getJobId()).thenAccept(done -> {
+                if (!PredictionJobService.STATUS_SUCCESS.equals(done.getStatus())) {
+                    log.warn("【自动任务】预测失败: {}", done.getMessage());
+                    return;
+                }
+                // 2. 按新批次生成采购计划（按供应商分组的草稿单）
+                var plan = purchasePlanService.getPurchasePlan(false);
+                // 3. 记录日志
+                log.info("【自动任务】预测完成，需要采购 {} 个物料，涉及 {} 个供应商，预计金额 {}",
+                        plan.getLineCount(), plan.getOrders().size(), plan.getTotalAmount());
 
                 log.info("【自动任务】每周库存预测和采购清单生成完成");
-            } else {
-                log.warn("【自动任务】预测失败: {}", predictionResult.get("message"));
-            }
+            }).exceptionally(e -> {
+                // 回调在预测线程上执行，异常不会传到外层 catch
+                log.error("【自动任务】预测完成后生成采购清单失败", e);
+                return null;
+            });
         } catch (Exception e) {
             log.error("【自动任务】每周库存预测任务失败", e);
         }
@@ -53,42 +77,26 @@ public class DB4AIScheduler {
     public void dailyAnomalyDetection() {
         log.info("【自动任务】开始执行每日异常检测...");
         try {
-            // 检测昨天发生的异常记录
-            var anomalies = db4aiService.getAnomalyRecords(
-                    java.time.LocalDate.now().minusDays(1),
-                    java.time.LocalDate.now().minusDays(1),
-                    false
-            );
-            log.info("【自动任务】发现 {} 条异常出入库记录", anomalies.size());
-            // 记录异常详情
-            anomalies.forEach(anomaly ->
-                    log.warn("【异常记录】单据号: {}, 物料: {}, 原因: {}, Z分数: {}",
-                            anomaly.getRecordId(),
-                            anomaly.getMaterialName(),
-                            anomaly.getAnomalyReason(),
-                            anomaly.getZScore()
-                    )
-            );
+            // 从水位线继续增量检测，漏跑的日期会在本次补上
+            var summary = anomalyScoringService.runIncrementalDetection();
+            log.info("【自动任务】增量检测扫描 {} 条记录，发现 {} 条异常出入库记录",
+                    summary.get("scanned"), summary.get("flagged"));
         } catch (Exception e) {
             log.error("【自动任务】每日异常检测任务失败", e);
         }
     }
 
     /**
-     * 每月1号2:00执行 - 模型维护和数据清理
+     * 每月1号2:00执行 - 模型维护
      */
     @Scheduled(cron = "0 0 2 1 * ?") // 每月1号2:00
     public void monthlyModelMaintenance() {
         log.info("【自动任务】开始执行月度模型维护...");
         try {
-            // 1. 清理旧预测数据（保留最近3个月）
-            String cleanupSql = "DELETE FROM stock_alert " +
-                    "WHERE create_time < CURRENT_DATE - INTERVAL '90 days' " +
-                    "AND alert_type = '低库存'";
-            // jdbcTemplate.update(cleanupSql);
-
-            // 2. 重新统计物料数据
-            // 3. 可选的模型重新训练
+            // 检测漂移，仅重训受影响的物料模型
+            var summary = modelRetrainingService.retrainDrifted();
+            log.info("【自动任务】漂移物料 {} 个，重训 {} 个",
+                    summary.get("drifted"), summary.get("retrained"));
 
             log.info("【自动任务】月度模型维护完成");
         } catch (Exception e) {
@@ -96,6 +104,34 @@ public class DB4AIScheduler {
         }
     }
 
+    /**
+     * 每天3:00执行 - 过期预警和预测日志分片归档（旧数据清理）
+     */
+    @Scheduled(cron = "0 0 3 * * ?") // 每天3:00
+    public void dailyDataRetention() {
+        log.info("【自动任务】开始执行数据归档...");
+        try {
+            var summary = dataRetentionService.runRetention();
+            log.info("【自动任务】数据归档结束: {}", summary.get("archived"));
+        } catch (Exception e) {
+            log.error("【自动任务】数据归档失败", e);
+        }
+    }
+
+    /**
+     * 每天1:30执行 - 增量汇总日出库量并更新ABC/XYZ分类
+     */
+    @Scheduled(cron = "0 30 1 * * ?") // 每天1:30
+    public void dailyInventoryClassification() {
+        log.info("【自动任务】开始执行ABC/XYZ分类...");
+        try {
+            var summary = inventoryClassificationService.refreshClassification();
+            log.info("【自动任务】ABC/XYZ分类完成: {}", summary.get("matrix"));
+        } catch (Exception e) {
+            log.error("【自动任务】ABC/XYZ分类失败", e);
+        }
+    }
+
     /**
      * 每天1:00执行 - 数据统计快照
      */
@@ -1,12 +1,23 @@
 package org.example.warehouse_management_sys.Service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.DTO.AlertBatchHandleDTO;
+import org.example.warehouse_management_sys.DTO.AlertQueryDTO;
 import org.example.warehouse_management_sys.Entity.StockAlert;
 import org.example.warehouse_management_sys.Mapper.StockAlertMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -14,22 +25,125 @@ public class AlertService {
 
     @Resource
     private StockAlertMapper stockAlertMapper;
+
+    @Resource
+    private DB4AIService db4aiService;
+
+    @Resource
+    private StockAlertEvaluationService stockAlertEvaluationService;
+
     public List<StockAlert> getUnhandledAlerts(String alertType) {
         return stockAlertMapper.selectUnhandled(alertType);
     }
 
-    public List<StockAlert> getAllAlerts() {
-        return stockAlertMapper.selectAll();
+    /**
+     * 键集分页查询预警，多取一条判断是否还有下一页
+     */
+    public Map<String, Object> getAlertPage(AlertQueryDTO query) {
+        int pageSize = query.getPageSize() == null ? 50 : query.getPageSize();
+        List<StockAlert> alerts = stockAlertMapper.selectPage(query, pageSize + 1);
+        boolean hasMore = alerts.size() > pageSize;
+        if (hasMore) {
+            alerts = alerts.subList(0, pageSize);
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("list", alerts);
+        page.put("hasMore", hasMore);
+        if (hasMore) {
+            StockAlert last = alerts.get(alerts.size() - 1);
+            page.put("nextCursorTime", last.getAlertTime());
+            page.put("nextCursorId", last.getAlertId());
+        }
+        return page;
     }
 
     @Transactional(rollbackFor = Exception.class)
     public boolean handleAlert(Integer alertId, String handleRemark) {
         int result = stockAlertMapper.handleAlert(alertId, handleRemark);
+        if (result > 0) {
+            db4aiService.invalidatePurchaseRecommendations();
+            StockAlert alert = stockAlertMapper.selectById(alertId);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stockAlertEvaluationService.onAlertHandled(alert);
+                }
+            });
+        }
         log.info("处理预警: alertId={}, remark={}", alertId, handleRemark);
         return result > 0;
     }
 
-    public List<StockAlert> getAlertsByMaterialId(String materialId) {
-        return stockAlertMapper.selectByMaterialId(materialId);
+    /**
+     * 批量处理预警：按ID列表或筛选条件一条语句更新，单事务提交，返回逐条处理结果
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<String, Object> handleAlerts(AlertBatchHandleDTO dto) {
+        boolean byIds = dto.getAlertIds() != null && !dto.getAlertIds().isEmpty();
+        if (!byIds && !hasFilter(dto)) {
+            throw new IllegalArgumentException("请指定预警ID或至少一个筛选条件");
+        }
+
+        List<StockAlert> handled = stockAlertMapper.handleBatch(dto);
+        if (!handled.isEmpty()) {
+            db4aiService.invalidatePurchaseRecommendations();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    handled.forEach(stockAlertEvaluationService::onAlertHandled);
+                }
+            });
+        }
+
+        Set<Integer> handledIds = handled.stream()
+                .map(StockAlert::getAlertId)
+                .collect(Collectors.toSet());
+        List<Map<String, Object>> results = new ArrayList<>();
+        if (byIds) {
+            // 未处理成功的ID再查一次状态，区分"已处理"与"不存在"
+            List<Integer> missed = dto.getAlertIds().stream()
+                    .distinct()
+                    .filter(id -> !handledIds.contains(id))
+                    .collect(Collectors.toList());
+            Map<Integer, String> statusMap = missed.isEmpty() ? Collections.emptyMap()
+                    : stockAlertMapper.selectStatusByIds(missed).stream()
+                            .collect(Collectors.toMap(StockAlert::getAlertId, StockAlert::getStatus));
+            for (Integer alertId : new LinkedHashSet<>(dto.getAlertIds())) {
+                if (handledIds.contains(alertId)) {
+                    results.add(itemResult(alertId, true, "处理成功"));
+                } else if (statusMap.containsKey(alertId)) {
+                    results.add(itemResult(alertId, false, "预警已处理"));
+                } else {
+                    results.add(itemResult(alertId, false, "预警不存在"));
+                }
+            }
+        } else {
+            handledIds.forEach(alertId -> results.add(itemResult(alertId, true, "处理成功")));
+        }
+
+        log.info("批量处理预警: 请求{}条, 成功{}条, remark={}",
+                byIds ? dto.getAlertIds().size() : "筛选", handled.size(), dto.getHandleRemark());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("handledCount", handled.size());
+        response.put("results", results);
+        return response;
+    }
+
+    private boolean hasFilter(AlertBatchHandleDTO dto) {
+        return (dto.getAlertType() != null && !dto.getAlertType().isEmpty())
+                || (dto.getMaterialId() != null && !dto.getMaterialId().isEmpty())
+                || (dto.getBatchId() != null && !dto.getBatchId().isEmpty())
+                || dto.getStartTime() != null
+                || dto.getEndTime() != null;
+    }
+
+    private Map<String, Object> itemResult(Integer alertId, boolean success, String message) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("alertId", alertId);
+        item.put("success", success);
+        item.put("message", message);
+        return item;
     }
 }
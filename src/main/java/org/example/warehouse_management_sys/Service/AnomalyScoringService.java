@@ -0,0 +1,542 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.Entity.InoutAnomaly;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * 出入库实时异常打分：按物料和出入库类型维护回溯窗口内的增量均值/方差(Welford)，
+ * 每条记录提交后立即计算Z分数，超过阈值写入 inout_anomaly 并发布事件。
+ * 实时打分与增量检测使用同一口径：本条记录之前、不早于其操作时间减回溯天数的同物料同类型记录。
+ * 夜间任务按水位线对新增记录做增量补充检测，覆盖实时打分遗漏的记录；
+ * 打分队列已满被拒绝的记录会把水位线回退到其时间点，由下一次增量检测补打。
+ */
+@Slf4j
+@Service
+public class AnomalyScoringService {
+
+    /**
+     * 样本数不足时不打分
+     */
+    private static final int MIN_SAMPLES = 5;
+
+    /**
+     * 增量检测水位线任务名
+     */
+    private static final String WATERMARK_JOB = "anomaly_detection";
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private ClusterModelRegistry clusterModelRegistry;
+
+    @Resource(name = "anomalyExecutor")
+    private ThreadPoolTaskExecutor anomalyExecutor;
+
+    @Value("${app.db4ai.anomaly.threshold:2.5}")
+    private double threshold;
+
+    @Value("${app.db4ai.anomaly.lookback-days:90}")
+    private int lookbackDays;
+
+    @Value("${app.db4ai.anomaly.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.db4ai.anomaly.max-chunks-per-run:200}")
+    private int maxChunksPerRun;
+
+    // key: 物料ID:出入库类型
+    private final Map<String, SlidingWindow> windowCache = new ConcurrentHashMap<>();
+
+    // 因打分队列已满而未实时打分的最早记录时间，下次增量检测前回退水位线
+    private final AtomicReference<LocalDateTime> earliestSkipped = new AtomicReference<>();
+
+    /**
+     * 出入库提交后调用，异步打分
+     *
+     * @param operationTime 记录在库中的操作时间，与增量检测使用同一排序键
+     */
+    public void onMovementCommitted(String recordId, String materialId, String inoutType,
+                                    BigDecimal quantity, LocalDateTime operationTime) {
+        try {
+            anomalyExecutor.execute(() -> {
+                try {
+                    score(recordId, materialId, inoutType, quantity, operationTime);
+                } catch (Exception e) {
+                    log.error("出入库异常打分失败: 单据号={}", recordId, e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            earliestSkipped.accumulateAndGet(operationTime,
+                    (current, skipped) -> current == null || skipped.isBefore(current) ? skipped : current);
+            log.warn("异常打分队列已满，单据 {} 交由增量检测补打", recordId);
+        }
+    }
+
+    private void score(String recordId, String materialId, String inoutType,
+                       BigDecimal quantity, LocalDateTime operationTime) {
+        // 首次遇到物料时加载本条之前回溯窗口内的记录；之后只累加排在已统计位置之后的记录，
+        // 加载时已提交、仍在队列中的记录已计入窗口，不再重复累加
+        String key = materialId + ":" + inoutType;
+        boolean loaded = false;
+        SlidingWindow window = windowCache.get(key);
+        if (window == null) {
+            SlidingWindow initial = loadWindow(materialId, inoutType, recordId, operationTime);
+            window = windowCache.putIfAbsent(key, initial);
+            if (window == null) {
+                window = initial;
+                loaded = true;
+            }
+        }
+
+        InoutAnomaly anomaly;
+        synchronized (window) {
+            // 移出早于本条回溯起点的记录，与增量检测的窗口一致
+            window.evictBefore(operationTime.minusDays(lookbackDays));
+            RunningStats stats = window.stats;
+            anomaly = evaluate(recordId, materialId, inoutType, quantity, operationTime,
+                    stats.mean, stats.std(), stats.count);
+            if (loaded || stats.isAfterLast(operationTime, recordId)) {
+                window.add(operationTime, quantity.doubleValue());
+                stats.markLast(operationTime, recordId);
+            }
+        }
+
+        if (anomaly != null && !saveAnomalies(Collections.singletonList(anomaly)).isEmpty()) {
+            log.warn("【实时异常】单据号: {}, 物料: {}, 数量: {}, Z分数: {}",
+                    recordId, materialId, quantity, anomaly.getZScore());
+            eventPublisher.publishEvent(anomaly);
+        }
+    }
+
+    /**
+     * 按水位线增量检测：从上次处理到的 (operation_time, record_id) 之后按分片打分，
+     * 每个分片与水位线推进在同一事务中提交，重跑不会重复处理，漏跑的夜间任务会在下次补上
+     */
+    public Map<String, Object> runIncrementalDetection() {
+        LocalDateTime skipped = earliestSkipped.getAndSet(null);
+        if (skipped != null) {
+            rewindWatermark(skipped);
+        }
+        int chunks = 0;
+        int scanned = 0;
+        int flagged = 0;
+        while (chunks < maxChunksPerRun) {
+            int[] chunk = transactionTemplate.execute(status -> processNextChunk());
+            chunks++;
+            scanned += chunk[0];
+            flagged += chunk[1];
+            if (chunk[0] < chunkSize) {
+                break;
+            }
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("chunks", chunks);
+        result.put("scanned", scanned);
+        result.put("flagged", flagged);
+        log.info("增量异常检测完成: 分片={}, 扫描={}, 异常={}", chunks, scanned, flagged);
+        return result;
+    }
+
+    /**
+     * 水位线已越过未实时打分的记录时回退到该记录之前
+     */
+    private void rewindWatermark(LocalDateTime skippedTime) {
+        int updated = jdbcTemplate.update(
+                "UPDATE job_watermark SET last_operation_time = ?, last_record_id = '', update_time = CURRENT_TIMESTAMP " +
+                        "WHERE job_name = ? AND last_operation_time >= ?",
+                skippedTime, WATERMARK_JOB, skippedTime);
+        if (updated > 0) {
+            log.info("增量异常检测水位线回退到 {}，补打队列已满时跳过的记录", skippedTime);
+        }
+    }
+
+    /**
+     * 处理下一个分片，返回 [扫描条数, 异常条数]
+     */
+    private int[] processNextChunk() {
+        List<Map<String, Object>> watermark = jdbcTemplate.queryForList(
+                "SELECT last_operation_time, last_record_id FROM job_watermark WHERE job_name = ? FOR UPDATE",
+                WATERMARK_JOB);
+        LocalDateTime lastTime;
+        String lastRecordId;
+        if (watermark.isEmpty()) {
+            lastTime = LocalDate.now().minusDays(lookbackDays).atStartOfDay();
+            lastRecordId = "";
+            jdbcTemplate.update(
+                    "INSERT INTO job_watermark (job_name, last_operation_time, last_record_id) VALUES (?, ?, ?)",
+                    WATERMARK_JOB, lastTime, lastRecordId);
+        } else {
+            lastTime = ((Timestamp) watermark.get(0).get("last_operation_time")).toLocalDateTime();
+            lastRecordId = (String) watermark.get(0).get("last_record_id");
+        }
+
+        List<Movement> chunk = jdbcTemplate.query(
+                "SELECT record_id, material_id, inout_type, quantity, operation_time " +
+                        "FROM inout_record " +
+                        "WHERE (operation_time, record_id) > (?, ?) " +
+                        "ORDER BY operation_time, record_id " +
+                        "LIMIT ?",
+                (rs, rowNum) -> new Movement(rs.getString("record_id"), rs.getString("material_id"),
+                        rs.getString("inout_type"), rs.getBigDecimal("quantity"),
+                        rs.getTimestamp("operation_time").toLocalDateTime()),
+                lastTime, lastRecordId, chunkSize);
+        if (chunk.isEmpty()) {
+            return new int[]{0, 0};
+        }
+
+        // 分片内物料从首条记录的回溯起点到末条记录之前的全部历史，按记录逐条计算其之前窗口的统计，
+        // 与实时打分口径一致：不含本条记录，也不使用本条之后的数据
+        Movement first = chunk.get(0);
+        Movement last = chunk.get(chunk.size() - 1);
+        List<String> materialIds = chunk.stream().map(Movement::getMaterialId).distinct()
+                .collect(Collectors.toList());
+        String placeholders = String.join(",", Collections.nCopies(materialIds.size(), "?"));
+        List<Object> params = new ArrayList<>(materialIds);
+        params.add(Timestamp.valueOf(first.getOperationTime().minusDays(lookbackDays)));
+        params.add(Timestamp.valueOf(last.getOperationTime()));
+        params.add(last.getRecordId());
+        List<Movement> history = jdbcTemplate.query(
+                "SELECT record_id, material_id, inout_type, quantity, operation_time " +
+                        "FROM inout_record " +
+                        "WHERE material_id IN (" + placeholders + ") " +
+                        "AND operation_time >= ? " +
+                        "AND (operation_time, record_id) < (?, ?) " +
+                        "ORDER BY operation_time, record_id",
+                (rs, rowNum) -> new Movement(rs.getString("record_id"), rs.getString("material_id"),
+                        rs.getString("inout_type"), rs.getBigDecimal("quantity"),
+                        rs.getTimestamp("operation_time").toLocalDateTime()),
+                params.toArray());
+        List<RunningStats> priorStats = priorWindowStats(history, chunk, lookbackDays);
+
+        // 已由实时打分判定为异常的记录保留原结果，不重复打分
+        Set<String> scored = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT record_id FROM inout_anomaly WHERE record_id IN (" +
+                        String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                String.class, chunk.stream().map(Movement::getRecordId).toArray()));
+
+        List<InoutAnomaly> anomalies = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Movement movement = chunk.get(i);
+            if (scored.contains(movement.getRecordId())) {
+                continue;
+            }
+            RunningStats stats = priorStats.get(i);
+            InoutAnomaly anomaly = evaluate(movement.getRecordId(), movement.getMaterialId(),
+                    movement.getInoutType(), movement.getQuantity(), movement.getOperationTime(),
+                    stats.mean, stats.std(), stats.count);
+            if (anomaly != null) {
+                anomalies.add(anomaly);
+            }
+        }
+
+        // 与实时打分并发写入同一单据时以先写入的为准，只对新写入的异常发布事件
+        List<InoutAnomaly> inserted = saveAnomalies(anomalies);
+        inserted.forEach(anomaly -> {
+            log.warn("【异常记录】单据号: {}, 物料: {}, 原因: {}, Z分数: {}",
+                    anomaly.getRecordId(), anomaly.getMaterialId(),
+                    anomaly.getAnomalyReason(), anomaly.getZScore());
+            eventPublisher.publishEvent(anomaly);
+        });
+        jdbcTemplate.update(
+                "UPDATE job_watermark SET last_operation_time = ?, last_record_id = ?, update_time = CURRENT_TIMESTAMP " +
+                        "WHERE job_name = ?",
+                last.getOperationTime(), last.getRecordId(), WATERMARK_JOB);
+        return new int[]{chunk.size(), inserted.size()};
+    }
+
+    /**
+     * 按 (操作时间, 单据号) 顺序滑动窗口，为每条目标记录计算同物料同类型、排在其前且
+     * 不早于其操作时间减回溯天数的历史统计。history 与 targets 均按该顺序排列
+     */
+    static List<RunningStats> priorWindowStats(List<Movement> history, List<Movement> targets, int lookbackDays) {
+        Map<String, List<Movement>> historyByKey = new HashMap<>();
+        for (Movement movement : history) {
+            historyByKey.computeIfAbsent(movement.key(), key -> new ArrayList<>()).add(movement);
+        }
+        // 每个键的窗口状态：[移出下标, 加入下标]
+        Map<String, int[]> cursors = new HashMap<>();
+        Map<String, RunningStats> windows = new HashMap<>();
+        List<RunningStats> result = new ArrayList<>(targets.size());
+        for (Movement target : targets) {
+            List<Movement> rows = historyByKey.getOrDefault(target.key(), Collections.emptyList());
+            int[] cursor = cursors.computeIfAbsent(target.key(), key -> new int[2]);
+            RunningStats window = windows.computeIfAbsent(target.key(), key -> new RunningStats());
+            while (cursor[1] < rows.size() && rows.get(cursor[1]).isBefore(target)) {
+                window.add(rows.get(cursor[1]).getQuantity().doubleValue());
+                cursor[1]++;
+            }
+            LocalDateTime windowStart = target.getOperationTime().minusDays(lookbackDays);
+            while (cursor[0] < cursor[1] && rows.get(cursor[0]).getOperationTime().isBefore(windowStart)) {
+                window.remove(rows.get(cursor[0]).getQuantity().doubleValue());
+                cursor[0]++;
+            }
+            result.add(window.copy());
+        }
+        return result;
+    }
+
+    /**
+     * 计算Z分数，超过阈值时返回异常记录
+     */
+    private InoutAnomaly evaluate(String recordId, String materialId, String inoutType, BigDecimal quantity,
+                                  LocalDateTime operationTime, double mean, double std, long count) {
+        if (count < MIN_SAMPLES || std <= 0) {
+            return null;
+        }
+        double value = quantity.doubleValue();
+        double zScore = (value - mean) / std;
+        if (zScore < threshold) {
+            return null;
+        }
+        InoutAnomaly anomaly = new InoutAnomaly();
+        anomaly.setRecordId(recordId);
+        anomaly.setMaterialId(materialId);
+        anomaly.setInoutType(inoutType);
+        anomaly.setQuantity(quantity);
+        anomaly.setZScore(BigDecimal.valueOf(zScore).setScale(2, RoundingMode.HALF_UP));
+        anomaly.setAvgQuantity(BigDecimal.valueOf(mean).setScale(2, RoundingMode.HALF_UP));
+        anomaly.setStdQuantity(BigDecimal.valueOf(std).setScale(2, RoundingMode.HALF_UP));
+        anomaly.setSampleCount((int) count);
+        anomaly.setCluster(clusterModelRegistry.predict(value));
+        anomaly.setAnomalyReason(String.format("%s数量超出历史均值 %.2f 个标准差", inoutType, zScore));
+        anomaly.setOperationTime(operationTime);
+        anomaly.setDetectTime(LocalDateTime.now());
+        return anomaly;
+    }
+
+    /**
+     * 写入异常记录，已打过分的单据保留原结果，返回本次新写入的记录
+     */
+    private List<InoutAnomaly> saveAnomalies(List<InoutAnomaly> anomalies) {
+        if (anomalies.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String sql = "INSERT INTO inout_anomaly " +
+                "(record_id, material_id, inout_type, quantity, z_score, avg_quantity, std_quantity, " +
+                "sample_count, cluster, anomaly_reason, operation_time, detect_time) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT (record_id) DO NOTHING";
+        int[] counts = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                InoutAnomaly anomaly = anomalies.get(i);
+                ps.setString(1, anomaly.getRecordId());
+                ps.setString(2, anomaly.getMaterialId());
+                ps.setString(3, anomaly.getInoutType());
+                ps.setBigDecimal(4, anomaly.getQuantity());
+                ps.setBigDecimal(5, anomaly.getZScore());
+                ps.setBigDecimal(6, anomaly.getAvgQuantity());
+                ps.setBigDecimal(7, anomaly.getStdQuantity());
+                ps.setInt(8, anomaly.getSampleCount());
+                ps.setObject(9, anomaly.getCluster(), Types.INTEGER);
+                ps.setString(10, anomaly.getAnomalyReason());
+                ps.setTimestamp(11, Timestamp.valueOf(anomaly.getOperationTime()));
+                ps.setTimestamp(12, Timestamp.valueOf(anomaly.getDetectTime()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return anomalies.size();
+            }
+        });
+        List<InoutAnomaly> inserted = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            // 驱动无法返回行数时按已写入处理
+            if (counts[i] != 0) {
+                inserted.add(anomalies.get(i));
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * 首次遇到物料时加载初始窗口：只取本条记录之前、回溯窗口内的记录，不含本条及之后提交的记录
+     */
+    private SlidingWindow loadWindow(String materialId, String inoutType,
+                                     String recordId, LocalDateTime operationTime) {
+        String sql = "SELECT quantity, operation_time " +
+                "FROM inout_record " +
+                "WHERE material_id = ? AND inout_type = ? " +
+                "AND (operation_time, record_id) < (?, ?) " +
+                "AND operation_time >= ? " +
+                "ORDER BY operation_time, record_id";
+        SlidingWindow window = new SlidingWindow();
+        jdbcTemplate.query(sql, rs -> {
+            window.add(rs.getTimestamp("operation_time").toLocalDateTime(), rs.getDouble("quantity"));
+        }, materialId, inoutType, Timestamp.valueOf(operationTime), recordId,
+                Timestamp.valueOf(operationTime.minusDays(lookbackDays)));
+        return window;
+    }
+
+    /**
+     * Welford 增量统计，并记录最后累加的记录位置 (操作时间, 单据号)
+     */
+    static class RunningStats {
+        long count;
+        double mean;
+        double m2;
+        private LocalDateTime lastTime;
+        private String lastRecordId;
+
+        void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        /**
+         * 移出一个样本（Welford 逆运算），用于滑动窗口
+         */
+        void remove(double value) {
+            if (count <= 1) {
+                count = 0;
+                mean = 0;
+                m2 = 0;
+                return;
+            }
+            count--;
+            double delta = value - mean;
+            mean -= delta / count;
+            m2 = Math.max(0, m2 - delta * (value - mean));
+        }
+
+        double std() {
+            return count > 1 ? Math.sqrt(m2 / count) : 0;
+        }
+
+        RunningStats copy() {
+            RunningStats copy = new RunningStats();
+            copy.count = count;
+            copy.mean = mean;
+            copy.m2 = m2;
+            return copy;
+        }
+
+        void markLast(LocalDateTime operationTime, String recordId) {
+            lastTime = operationTime;
+            lastRecordId = recordId;
+        }
+
+        /**
+         * 记录是否排在最后累加的记录之后（同增量检测的 (operation_time, record_id) 顺序）
+         */
+        boolean isAfterLast(LocalDateTime operationTime, String recordId) {
+            if (lastTime == null) {
+                return true;
+            }
+            int cmp = operationTime.compareTo(lastTime);
+            return cmp > 0 || (cmp == 0 && recordId.compareTo(lastRecordId) > 0);
+        }
+    }
+
+    /**
+     * 回溯窗口：按操作时间顺序保存窗口内的样本，移出过期样本时同步更新统计
+     */
+    static class SlidingWindow {
+        final RunningStats stats = new RunningStats();
+        private final Deque<LocalDateTime> times = new ArrayDeque<>();
+        private final Deque<Double> values = new ArrayDeque<>();
+
+        void add(LocalDateTime operationTime, double value) {
+            times.addLast(operationTime);
+            values.addLast(value);
+            stats.add(value);
+        }
+
+        /**
+         * 移出操作时间早于 windowStart 的样本
+         */
+        void evictBefore(LocalDateTime windowStart) {
+            while (!times.isEmpty() && times.peekFirst().isBefore(windowStart)) {
+                times.removeFirst();
+                stats.remove(values.removeFirst());
+            }
+        }
+
+        int size() {
+            return times.size();
+        }
+    }
+
+    /**
+     * 出入库记录的打分视图
+     */
+    static class Movement {
+        private final String recordId;
+        private final String materialId;
+        private final String inoutType;
+        private final BigDecimal quantity;
+        private final LocalDateTime operationTime;
+
+        Movement(String recordId, String materialId, String inoutType,
+                 BigDecimal quantity, LocalDateTime operationTime) {
+            this.recordId = recordId;
+            this.materialId = materialId;
+            this.inoutType = inoutType;
+            this.quantity = quantity;
+            this.operationTime = operationTime;
+        }
+
+        String getRecordId() {
+            return recordId;
+        }
+
+        String getMaterialId() {
+            return materialId;
+        }
+
+        String getInoutType() {
+            return inoutType;
+        }
+
+        BigDecimal getQuantity() {
+            return quantity;
+        }
+
+        LocalDateTime getOperationTime() {
+            return operationTime;
+        }
+
+        String key() {
+            return materialId + ":" + inoutType;
+        }
+
+        /**
+         * 按 (操作时间, 单据号) 是否排在另一条记录之前
+         */
+        boolean isBefore(Movement other) {
+            int cmp = operationTime.compareTo(other.operationTime);
+            return cmp < 0 || (cmp == 0 && recordId.compareTo(other.recordId) < 0);
+        }
+    }
+}
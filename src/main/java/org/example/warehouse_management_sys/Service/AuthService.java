@@ -5,8 +5,10 @@ import org.example.warehouse_management_sys.DTO.LoginDTO;
 import org.example.warehouse_management_sys.Entity.Operator;
 import org.example.warehouse_management_sys.Mapper.OperatorMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.DigestUtils;
 import javax.annotation.Resource;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -15,20 +17,39 @@ public class AuthService {
     @Resource
     private OperatorMapper operatorMapper;
 
+    @Resource
+    private OperatorStatusCache operatorStatusCache;
+
+    @Resource
+    private LoginThrottleService loginThrottleService;
+
     /**
      * 用户登录验证
+     * 已知不存在的用户名不查库；查库受登录并发预算限制，繁忙时抛出 IllegalStateException
      */
     public Operator login(LoginDTO loginDTO) {
+        String username = loginDTO.getUsername();
+        if (loginThrottleService.isKnownUnknown(username)) {
+            log.warn("登录失败(用户不存在): {}", username);
+            return null;
+        }
         try {
+            List<Operator> candidates = loginThrottleService.withQueryPermit(
+                    () -> operatorMapper.selectByUsername(username));
+            if (candidates.isEmpty()) {
+                loginThrottleService.markUnknown(username);
+                log.warn("登录失败(用户不存在): {}", username);
+                return null;
+            }
             // 对密码进行MD5加密
             String encryptedPassword = DigestUtils.md5DigestAsHex(
                     loginDTO.getPassword().getBytes()
             );
-            // 查询用户
-            Operator operator = operatorMapper.selectByLogin(
-                    loginDTO.getUsername(),
-                    encryptedPassword
-            );
+            Operator operator = candidates.stream()
+                    .filter(o -> encryptedPassword.equals(o.getPassword()))
+                    .filter(o -> OperatorStatusCache.STATUS_ACTIVE.equals(o.getStatus()))
+                    .findFirst()
+                    .orElse(null);
             if (operator != null) {
                 log.info("用户登录成功: {}", operator.getOperatorId());
                 // 不返回密码
@@ -37,6 +58,8 @@ public class AuthService {
                 log.warn("登录失败: {}", loginDTO.getUsername());
             }
             return operator;
+        } catch (IllegalStateException e) {
+            throw e;
         } catch (Exception e) {
             log.error("登录异常", e);
             throw new RuntimeException("登录异常");
@@ -44,8 +67,9 @@ public class AuthService {
     }
 
     /**
-     * 修改密码
+     * 修改密码，状态缓存在事务提交后失效
      */
+    @Transactional(rollbackFor = Exception.class)
     public boolean changePassword(String operatorId, String oldPassword, String newPassword) {
         Operator operator = operatorMapper.selectById(operatorId);
         if (operator == null) {
@@ -62,15 +86,9 @@ public class AuthService {
         String encryptedNewPassword = DigestUtils.md5DigestAsHex(newPassword.getBytes());
 
         int result = operatorMapper.updatePassword(operatorId, encryptedNewPassword);
+        operatorStatusCache.evict(operatorId);
         log.info("修改密码: {}, 结果: {}", operatorId, result > 0);
         return result > 0;
     }
 
-    /**
-     * 验证操作员是否存在且状态正常
-     */
-    public boolean validateOperator(String operatorId) {
-        Operator operator = operatorMapper.selectById(operatorId);
-        return operator != null && "在职".equals(operator.getStatus());
-    }
 }
\ No newline at end of file
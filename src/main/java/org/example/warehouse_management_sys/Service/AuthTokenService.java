@@ -0,0 +1,119 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * 无状态令牌：载荷为 操作员ID|过期时间(秒)|状态版本，以 HMAC-SHA256 签名。
+ * 各节点使用相同密钥即可独立校验，不需要共享会话存储；
+ * 签名和过期在本地校验，状态与版本走 {@link OperatorStatusCache}。
+ */
+@Slf4j
+@Service
+public class AuthTokenService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * 密钥最短字节数，与 HMAC-SHA256 输出长度一致
+     */
+    private static final int MIN_SECRET_BYTES = 32;
+
+    @Resource
+    private OperatorStatusCache operatorStatusCache;
+
+    /**
+     * 签名密钥，无默认值：未配置或长度不足时启动失败，避免各节点回落到公开的密钥
+     */
+    @Value("${app.auth.token-secret}")
+    private String tokenSecret;
+
+    @Value("${app.auth.token-ttl-minutes:480}")
+    private long tokenTtlMinutes;
+
+    private SecretKeySpec signingKey;
+
+    @PostConstruct
+    public void init() {
+        if (tokenSecret == null || tokenSecret.trim().isEmpty()) {
+            throw new IllegalStateException("未配置令牌签名密钥 app.auth.token-secret（环境变量 WAREHOUSE_TOKEN_SECRET）");
+        }
+        if (tokenSecret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("令牌签名密钥 app.auth.token-secret 长度不足 " + MIN_SECRET_BYTES + " 字节");
+        }
+        signingKey = new SecretKeySpec(tokenSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    /**
+     * 签发令牌，携带操作员当前状态版本
+     */
+    public String issue(String operatorId) {
+        long expiresAt = System.currentTimeMillis() / 1000 + tokenTtlMinutes * 60;
+        int version = operatorStatusCache.currentVersion(operatorId);
+        String payload = operatorId + "|" + expiresAt + "|" + version;
+        String encoded = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return encoded + "." + sign(encoded);
+    }
+
+    /**
+     * 校验令牌，通过时返回操作员ID，否则返回 null
+     */
+    public String verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+        String encoded = token.substring(0, dot);
+        byte[] expected = sign(encoded).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return null;
+        }
+
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split("\\|");
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            long expiresAt = Long.parseLong(parts[1]);
+            int version = Integer.parseInt(parts[2]);
+            if (expiresAt < System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            return operatorStatusCache.isActive(parts[0], version) ? parts[0] : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String sign(String data) {
+        try {
+            // Mac 非线程安全，每次签名单独创建
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("令牌签名失败", e);
+        }
+    }
+}
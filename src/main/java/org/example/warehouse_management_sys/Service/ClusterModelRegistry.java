@@ -0,0 +1,271 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 出库数量K-means聚类模型的内存注册表。
+ * 模型在Java中按出库数量训练（一维），与 stock_kmeans_model_4517 使用同一份数据窗口；
+ * 数据库模型重新训练（gs_model_warehouse 创建时间变化）后自动刷新。
+ * 聚类编号按质心从小到大排列：0=小批量，k-1=大批量。
+ * 模型加载后按新模型重标 inout_anomaly.cluster，表中只有一套编号。
+ */
+@Slf4j
+@Service
+public class ClusterModelRegistry {
+
+    private static final String DB_MODEL_NAME = "stock_kmeans_model_4517";
+    private static final int MAX_ITERATIONS = 100;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.db4ai.cluster.k:3}")
+    private int k;
+
+    @Value("${app.db4ai.anomaly.lookback-days:90}")
+    private int lookbackDays;
+
+    private volatile ClusterModel model;
+
+    @PostConstruct
+    public void init() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("启动时加载聚类模型失败，将在定时检查时重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 定时检查数据库模型是否重新训练
+     */
+    @Scheduled(fixedDelayString = "${app.db4ai.cluster.check-interval-ms:600000}")
+    public void refreshIfModelChanged() {
+        try {
+            String version = queryDbModelVersion();
+            ClusterModel current = model;
+            if (current == null || !Objects.equals(current.dbModelVersion, version)) {
+                log.info("检测到聚类模型变化(版本: {} -> {})，重新加载", current != null ? current.dbModelVersion : null, version);
+                refresh();
+            }
+        } catch (Exception e) {
+            log.error("检查聚类模型版本失败", e);
+        }
+    }
+
+    /**
+     * 重新训练并替换内存模型
+     */
+    public synchronized ClusterModel refresh() {
+        String version = queryDbModelVersion();
+        List<Double> rows = jdbcTemplate.queryForList(
+                "SELECT quantity::double precision FROM inout_record " +
+                        "WHERE inout_type = '出库' " +
+                        "AND operation_time >= CURRENT_DATE - CAST(? AS INTEGER) * INTERVAL '1 day'",
+                Double.class, lookbackDays);
+        double[] values = rows.stream().filter(Objects::nonNull).mapToDouble(Double::doubleValue).toArray();
+
+        ClusterModel trained = train(values, k);
+        trained.dbModelVersion = version;
+        model = trained;
+        log.info("聚类模型已加载: 样本数={}, 质心={}", values.length, Arrays.toString(trained.centroids));
+        relabelAnomalies(trained);
+        return trained;
+    }
+
+    /**
+     * 按模型重标异常记录的聚类编号（含回填记录），只更新编号变化的行
+     */
+    private void relabelAnomalies(ClusterModel trained) {
+        if (trained.centroids.length == 0) {
+            return;
+        }
+        double[] bounds = boundaries(trained.centroids);
+        StringBuilder label = new StringBuilder("CASE ");
+        for (int c = 0; c < bounds.length; c++) {
+            label.append("WHEN quantity <= ? THEN ").append(c).append(' ');
+        }
+        label.append("ELSE ").append(bounds.length).append(" END");
+        List<Object> params = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            for (double bound : bounds) {
+                params.add(bound);
+            }
+        }
+        try {
+            int updated = jdbcTemplate.update(
+                    "UPDATE inout_anomaly SET cluster = " + label + " WHERE cluster IS DISTINCT FROM " + label,
+                    params.toArray());
+            log.info("按聚类模型重标异常记录: {}条", updated);
+        } catch (Exception e) {
+            log.error("重标异常记录聚类编号失败", e);
+        }
+    }
+
+    /**
+     * 相邻质心的中点，数量不超过第 c 个中点时归入簇 c（与 nearest 相同，距离相等时取编号小的簇）
+     */
+    static double[] boundaries(double[] centroids) {
+        double[] bounds = new double[Math.max(0, centroids.length - 1)];
+        for (int c = 0; c < bounds.length; c++) {
+            bounds[c] = (centroids[c] + centroids[c + 1]) / 2;
+        }
+        return bounds;
+    }
+
+    /**
+     * 最近质心预测，模型未加载时返回 null
+     */
+    public Integer predict(double quantity) {
+        ClusterModel current = model;
+        if (current == null || current.centroids.length == 0) {
+            return null;
+        }
+        return current.nearest(quantity);
+    }
+
+    public ClusterModel getModel() {
+        return model;
+    }
+
+    private String queryDbModelVersion() {
+        try {
+            return jdbcTemplate.query(
+                    "SELECT MAX(createtime)::text FROM gs_model_warehouse WHERE modelname = ?",
+                    rs -> rs.next() ? rs.getString(1) : null, DB_MODEL_NAME);
+        } catch (Exception e) {
+            // 非openGauss环境没有模型仓库，仅按内存模型运行
+            return null;
+        }
+    }
+
+    /**
+     * 一维 Lloyd K-means，按分位数初始化保证结果可复现
+     */
+    static ClusterModel train(double[] values, int k) {
+        ClusterModel result = new ClusterModel();
+        result.trainTime = LocalDateTime.now();
+        result.sampleCount = values.length;
+        if (values.length == 0) {
+            result.centroids = new double[0];
+            result.clusterStats = Collections.emptyList();
+            return result;
+        }
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int clusters = Math.min(k, sorted.length);
+        double[] centroids = new double[clusters];
+        for (int i = 0; i < clusters; i++) {
+            centroids[i] = sorted[(int) ((i + 0.5) * sorted.length / clusters)];
+        }
+
+        // 数据已排序，每个簇对应一段连续区间，用边界下标代替逐点分配
+        int[] bounds = new int[clusters + 1];
+        for (int iter = 0; iter < MAX_ITERATIONS; iter++) {
+            bounds[0] = 0;
+            bounds[clusters] = sorted.length;
+            for (int c = 1; c < clusters; c++) {
+                double mid = (centroids[c - 1] + centroids[c]) / 2;
+                int idx = Arrays.binarySearch(sorted, mid);
+                bounds[c] = Math.max(bounds[c - 1], idx >= 0 ? idx : -idx - 1);
+            }
+            boolean changed = false;
+            for (int c = 0; c < clusters; c++) {
+                if (bounds[c + 1] > bounds[c]) {
+                    double sum = 0;
+                    for (int i = bounds[c]; i < bounds[c + 1]; i++) {
+                        sum += sorted[i];
+                    }
+                    double updated = sum / (bounds[c + 1] - bounds[c]);
+                    changed |= updated != centroids[c];
+                    centroids[c] = updated;
+                }
+            }
+            Arrays.sort(centroids);
+            if (!changed) {
+                break;
+            }
+        }
+
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (int c = 0; c < clusters; c++) {
+            Map<String, Object> cluster = new LinkedHashMap<>();
+            int count = bounds[c + 1] - bounds[c];
+            cluster.put("cluster", c);
+            cluster.put("record_count", count);
+            cluster.put("centroid", round(centroids[c]));
+            cluster.put("avg_quantity", count > 0 ? round(centroids[c]) : null);
+            cluster.put("min_quantity", count > 0 ? round(sorted[bounds[c]]) : null);
+            cluster.put("max_quantity", count > 0 ? round(sorted[bounds[c + 1] - 1]) : null);
+            stats.add(cluster);
+        }
+        result.centroids = centroids;
+        result.clusterStats = Collections.unmodifiableList(stats);
+        return result;
+    }
+
+    private static BigDecimal round(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 不可变的模型快照
+     */
+    public static class ClusterModel {
+        private double[] centroids;
+        private List<Map<String, Object>> clusterStats;
+        private int sampleCount;
+        private LocalDateTime trainTime;
+        private String dbModelVersion;
+
+        public int nearest(double quantity) {
+            int best = 0;
+            for (int c = 1; c < centroids.length; c++) {
+                if (Math.abs(quantity - centroids[c]) < Math.abs(quantity - centroids[best])) {
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        public double[] getCentroids() {
+            return centroids.clone();
+        }
+
+        public double getCentroid(int cluster) {
+            return centroids[cluster];
+        }
+
+        public int getClusterCount() {
+            return centroids.length;
+        }
+
+        public List<Map<String, Object>> getClusterStats() {
+            return clusterStats;
+        }
+
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        public LocalDateTime getTrainTime() {
+            return trainTime;
+        }
+
+        public String getDbModelVersion() {
+            return dbModelVersion;
+        }
+    }
+}
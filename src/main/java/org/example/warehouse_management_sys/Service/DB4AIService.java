@@ -5,11 +5,14 @@ package org.example.warehouse_management_sys.Service;
 import lombok.extern.slf4j.Slf4j;
 import org.example.warehouse_management_sys.DTO.AnomalyDetectionDTO;
 import org.example.warehouse_management_sys.DTO.DB4AIPredictDTO;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Resource;
 import java.math.BigDecimal;
@@ -19,48 +22,98 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
 
 @Slf4j
 @Service
 public class DB4AIService {
 
+    /**
+     * 存储过程执行阶段：单条 CALL 原子执行，期间无法取消
+     */
+    public static final String STAGE_RUN_PROCEDURE = "执行预测模型（原子执行，不可取消）";
+
+    /**
+     * 预测结果写入分片大小（按物料）
+     */
+    private static final int RESULT_CHUNK_SIZE = 50;
+
+    /**
+     * 旧批次预警清理分片大小
+     */
+    private static final int RETIRE_CHUNK_SIZE = 500;
+
+    /**
+     * 预测日志单页最大条数
+     */
+    private static final int MAX_LOG_PAGE_SIZE = 500;
+
+    /**
+     * DB4AI依赖的模型、视图和存储过程
+     */
+    private static final String[] DB4AI_COMPONENTS = {
+            "MATERIAL_NUM",
+            "V_DAILY_STOCK_CHANGE",
+            "stock_xgb_model",
+            "V_OUT_RECORD_ARRAY_4517",
+            "stock_kmeans_model_4517",
+            "V_MATERIAL_OUT_STATS_4517",
+            "V_ANOMALY_INOUT_LOOSE_4517",
+            "SP_PREDICT_STOCK_WARNING"
+    };
+
+    /**
+     * 系统状态页展示行数的表
+     */
+    private static final String[] STATUS_TABLES = {"material", "inout_record", "supplier", "stock_alert"};
+
     @Resource
     private JdbcTemplate jdbcTemplate;
 
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private PurchasePlanService purchasePlanService;
+
+    @Value("${app.db4ai.status.cache-ttl-ms:60000}")
+    private long statusCacheTtlMs;
+
+    // 系统状态缓存
+    private volatile Map<String, Object> cachedStatus;
+    private volatile long cachedStatusTime;
+    private final ReentrantLock statusRefreshLock = new ReentrantLock();
+
+    // 采购推荐缓存，失效时递增版本号
+    private volatile RecommendationCache recommendationCache;
+    private final AtomicLong recommendationVersion = new AtomicLong();
+
     /**
-     * 检查数据库模型和视图是否存在
+     * 检查数据库模型和视图是否存在（单次目录查询）
      */
     public Map<String, Boolean> checkDB4AIComponents() {
-        Map<String, Boolean> result = new HashMap<>();
+        Map<String, Boolean> result = new LinkedHashMap<>();
         try {
-            // 检查模型
-            String[] components = {
-                    "MATERIAL_NUM",
-                    "V_DAILY_STOCK_CHANGE",
-                    "stock_xgb_model",
-                    "V_OUT_RECORD_ARRAY_4517",
-                    "stock_kmeans_model_4517",
-                    "V_MATERIAL_OUT_STATS_4517",
-                    "V_ANOMALY_INOUT_LOOSE_4517"
-            };
-
-            for (String component : components) {
-                try {
-                    if (component.startsWith("V_") || component.startsWith("MATERIAL_")) {
-                        // 检查表或视图
-                        String sql = "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = ?";
-                        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, component.toLowerCase());
-                        result.put(component, count != null && count > 0);
-                    } else {
-                        // 检查模型
-                        String sql = "SELECT COUNT(*) FROM pg_proc WHERE proname = ?";
-                        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, component.toLowerCase());
-                        result.put(component, count != null && count > 0);
-                    }
-                } catch (Exception e) {
-                    result.put(component, false);
-                }
+            // V_/MATERIAL_ 开头的为表或视图，其余为模型/存储过程
+            StringBuilder values = new StringBuilder();
+            List<Object> params = new ArrayList<>();
+            for (String component : DB4AI_COMPONENTS) {
+                values.append(values.length() > 0 ? ", " : "").append("(?, ?)");
+                params.add(component);
+                params.add(component.startsWith("V_") || component.startsWith("MATERIAL_") ? "relation" : "proc");
             }
+            String sql = "SELECT c.name, " +
+                    "CASE WHEN c.kind = 'relation' " +
+                    "THEN EXISTS (SELECT 1 FROM pg_class r WHERE r.relname = lower(c.name) AND r.relkind IN ('r', 'v', 'm', 'p')) " +
+                    "ELSE EXISTS (SELECT 1 FROM pg_proc p WHERE p.proname = lower(c.name)) END AS present " +
+                    "FROM (VALUES " + values + ") AS c(name, kind)";
+            jdbcTemplate.query(sql, rs -> {
+                result.put(rs.getString("name"), rs.getBoolean("present"));
+            }, params.toArray());
 
             log.info("DB4AI组件检查结果: {}", result);
             return result;
@@ -73,13 +126,23 @@ public class DB4AIService {
 
 
     /**
-     * 调用存储过程生成未来2周库存预测预警
+     * 调用存储过程生成未来2周库存预测预警。
+     * 存储过程在自身事务内原子执行，期间不汇报进度也无法取消；之后按物料分片写入结构化结果，
+     * 每个分片独立提交，最后在一个短事务内打批次号并切换发布指针。
+     * 取消或失败时清理本次未发布的预警和结果，已发布批次不受影响
+     *
+     * @param progress  进度回调(百分比, 阶段描述)
+     * @param cancelled 取消标记，在存储过程前后和每个物料分片之间检查
      */
-    @Transactional
-    public Map<String, Object> generateStockPredictions() {
+    public Map<String, Object> generateStockPredictions(BiConsumer<Integer, String> progress,
+                                                        BooleanSupplier cancelled) {
         Map<String, Object> result = new HashMap<>();
+        Long maxAlertIdBefore = null;
+        String batchId = null;
+        boolean procedureDone = false;
         try {
             log.info("开始执行库存预测预警...");
+            progress.accept(5, "检查历史数据");
             // 先检查是否有足够的历史数据
             String checkSql = "SELECT COUNT(*) FROM inout_record WHERE operation_time >= CURRENT_DATE - INTERVAL '60 days'";
             Integer historyCount = jdbcTemplate.queryForObject(checkSql, Integer.class);
@@ -101,78 +164,201 @@ public class DB4AIService {
                 log.error("预测存储过程 SP_PREDICT_STOCK_WARNING 不存在");
                 return result;
             }
+            checkCancelled(cancelled);
 
-            // 先清空之前的预测预警
-            String deleteSql = "DELETE FROM stock_alert WHERE alert_type = '低库存' AND handle_remark IS NULL";
-            int deletedCount = jdbcTemplate.update(deleteSql);
-            log.info("已清除 {} 条旧的预测预警", deletedCount);
+            // 记录调用前的最大预警ID，新批次预警写入后不删除旧批次，由发布指针切换可见性
+            progress.accept(10, "准备预测批次");
+            maxAlertIdBefore = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(alert_id), 0) FROM stock_alert", Long.class);
+            checkCancelled(cancelled);
 
-            // 调用存储过程
+            // 调用存储过程：单条 CALL 原子执行，结束前进度停在本阶段
+            progress.accept(20, STAGE_RUN_PROCEDURE);
             String callSql = "CALL SP_PREDICT_STOCK_WARNING()";
-            jdbcTemplate.execute(callSql);
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.execute(callSql));
+            procedureDone = true;
+            checkCancelled(cancelled);
+
+            // 将本批次预测结果按物料分片写入结构化结果表，每个分片独立提交
+            batchId = jdbcTemplate.query(
+                    "SELECT batch_id FROM stock_prediction_batch ORDER BY end_time DESC LIMIT 1",
+                    rs -> rs.next() ? rs.getString(1) : null);
+            int resultCount = 0;
+            if (batchId != null) {
+                String resultBatchId = batchId;
+                List<String> materialIds = jdbcTemplate.queryForList(
+                        "SELECT DISTINCT material_id FROM stock_prediction_log " +
+                                "WHERE batch_id = ? AND material_id IS NOT NULL AND message LIKE '物料%当前=%'",
+                        String.class, batchId);
+                for (int from = 0; from < materialIds.size(); from += RESULT_CHUNK_SIZE) {
+                    checkCancelled(cancelled);
+                    int to = Math.min(from + RESULT_CHUNK_SIZE, materialIds.size());
+                    List<String> chunk = materialIds.subList(from, to);
+                    Integer saved = transactionTemplate.execute(status -> savePredictionResults(resultBatchId, chunk));
+                    resultCount += saved == null ? 0 : saved;
+                    progress.accept(20 + 75 * to / materialIds.size(),
+                            String.format("写入预测结果 %d/%d", to, materialIds.size()));
+                }
+            }
+            log.info("批次 {} 写入 {} 条结构化预测结果", batchId, resultCount);
+            checkCancelled(cancelled);
 
-            // 检查是否生成了预测数据
-            String checkPredictionsSql = "SELECT COUNT(*) FROM stock_alert WHERE alert_type = '低库存'";
-            Integer predictionCount = jdbcTemplate.queryForObject(checkPredictionsSql, Integer.class);
+            // 为存储过程新生成的预警打上批次号并原子切换发布指针，读端不会看到半成品；
+            // 预测期间并发写入的实时评估预警不归入批次
+            progress.accept(97, "发布预测批次");
+            if (batchId == null) {
+                batchId = "BATCH" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+            }
+            String publishBatchId = batchId;
+            long alertIdBefore = maxAlertIdBefore;
+            Integer predictionCount = transactionTemplate.execute(status -> {
+                int tagged = jdbcTemplate.update(
+                        "UPDATE stock_alert SET batch_id = ? " +
+                                "WHERE alert_type = '低库存' AND source = '存储过程' " +
+                                "AND batch_id IS NULL AND alert_id > ?",
+                        publishBatchId, alertIdBefore);
+                publishAlertBatch("低库存", publishBatchId);
+                invalidatePurchaseRecommendations();
+                purchasePlanService.invalidate();
+                return tagged;
+            });
+            log.info("发布预测批次 {}，包含 {} 条预警", batchId, predictionCount);
 
             result.put("code", 200);
             result.put("message", "库存预测完成");
             result.put("predictionCount", predictionCount);
             result.put("historyCount", historyCount);
+            result.put("batchId", batchId);
 
             log.info("库存预测预警生成完成，共生成 {} 条预测记录", predictionCount);
 
+        } catch (CancellationException e) {
+            if (procedureDone) {
+                discardUnpublishedBatch(batchId, maxAlertIdBefore);
+            }
+            log.warn("库存预测已取消，本次未发布的结果已清理");
+            result.put("code", 499);
+            result.put("message", "库存预测已取消");
         } catch (Exception e) {
+            if (procedureDone) {
+                discardUnpublishedBatch(batchId, maxAlertIdBefore);
+            }
             log.error("执行库存预测预警失败", e);
             result.put("code", 500);
             result.put("message", "库存预测失败: " + e.getMessage());
         }
         return result;
     }
+
+    /**
+     * 清理存储过程本次生成但未发布的预警，以及未发布批次已写入的结构化结果；失败只记录日志
+     */
+    private void discardUnpublishedBatch(String batchId, long maxAlertIdBefore) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int alerts = jdbcTemplate.update(
+                        "DELETE FROM stock_alert WHERE alert_type = '低库存' AND source = '存储过程' " +
+                                "AND batch_id IS NULL AND alert_id > ?",
+                        maxAlertIdBefore);
+                int results = batchId == null ? 0 : jdbcTemplate.update(
+                        "DELETE FROM stock_prediction_result WHERE batch_id = ? " +
+                                "AND NOT EXISTS (SELECT 1 FROM stock_alert_publish WHERE batch_id = ?)",
+                        batchId, batchId);
+                log.info("已清理未发布批次 {}: {} 条预警，{} 条预测结果", batchId, alerts, results);
+            });
+        } catch (Exception e) {
+            log.error("清理未发布批次 {} 失败", batchId, e);
+        }
+    }
+
+    /**
+     * 切换预警类型的已发布批次（单行更新）
+     */
+    private void publishAlertBatch(String alertType, String batchId) {
+        int updated = jdbcTemplate.update(
+                "UPDATE stock_alert_publish SET batch_id = ?, publish_time = CURRENT_TIMESTAMP WHERE alert_type = ?",
+                batchId, alertType);
+        if (updated == 0) {
+            jdbcTemplate.update(
+                    "INSERT INTO stock_alert_publish (alert_type, batch_id) VALUES (?, ?)",
+                    alertType, batchId);
+        }
+    }
+
+    /**
+     * 后台分片清理已被替换的旧批次未处理预警，每个分片独立提交
+     */
+    public int retireStaleAlertBatches() {
+        String retireSql = "DELETE FROM stock_alert WHERE alert_id IN (" +
+                "SELECT sa.alert_id FROM stock_alert sa " +
+                "JOIN stock_alert_publish p ON p.alert_type = sa.alert_type " +
+                "WHERE sa.status = '未处理' " +
+                "AND sa.source = '存储过程' " +
+                "AND sa.batch_id IS NOT NULL " +
+                "AND sa.batch_id <> p.batch_id " +
+                "LIMIT " + RETIRE_CHUNK_SIZE + ")";
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(retireSql);
+            total += deleted;
+        } while (deleted == RETIRE_CHUNK_SIZE);
+        log.info("已清理 {} 条旧批次预测预警", total);
+        return total;
+    }
+
+    private void checkCancelled(BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("预测任务已取消");
+        }
+    }
+
     /**
      * 获取预测过程日志
      */
-    public Map<String, Object> getPredictionLogs(String batchId, Integer limit) {
+    @Transactional(readOnly = true)
+    public Map<String, Object> getPredictionLogs(String batchId, Long afterLogId, Integer limit) {
         Map<String, Object> result = new HashMap<>();
         try {
+            int pageSize = limit == null || limit <= 0 ? 100 : Math.min(limit, MAX_LOG_PAGE_SIZE);
+
+            // 键集分页：按 (batch_id, log_id) 索引定位，耗时与表大小无关
             String sql = "SELECT " +
                     "log_id, batch_id, log_level, material_id, message, " +
                     "to_char(log_time, 'YYYY-MM-DD HH24:MI:SS') as log_time, " +
                     "prediction_count " +
                     "FROM stock_prediction_log " +
-                    "WHERE 1=1 ";
+                    "WHERE log_id > ? ";
 
             List<Object> params = new ArrayList<>();
+            params.add(afterLogId == null ? 0L : afterLogId);
 
             if (batchId != null && !batchId.isEmpty()) {
                 sql += " AND batch_id = ? ";
                 params.add(batchId);
             }
 
-            sql += " ORDER BY log_id ASC ";
-
-            if (limit != null && limit > 0) {
-                sql += " LIMIT ? ";
-                params.add(limit);
-            }
+            sql += " ORDER BY log_id ASC LIMIT ? ";
+            params.add(pageSize);
 
             List<Map<String, Object>> logs = jdbcTemplate.queryForList(sql, params.toArray());
 
-            // 获取最新的批次信息
-            String latestBatchSql = "SELECT batch_id, MAX(log_time) as last_time, " +
-                    "COUNT(*) as log_count, " +
-                    "SUM(CASE WHEN log_level = 'SUCCESS' THEN 1 ELSE 0 END) as success_count " +
-                    "FROM stock_prediction_log " +
-                    "GROUP BY batch_id " +
-                    "ORDER BY last_time DESC " +
+            // 最新批次信息取自触发器维护的批次汇总表
+            String latestBatchSql = "SELECT batch_id, end_time as last_time, start_time, " +
+                    "log_count, success_count, prediction_count " +
+                    "FROM stock_prediction_batch " +
+                    "ORDER BY end_time DESC " +
                     "LIMIT 5";
 
             List<Map<String, Object>> batchList = jdbcTemplate.queryForList(latestBatchSql);
 
+            Object nextLogId = logs.size() == pageSize ? logs.get(logs.size() - 1).get("log_id") : null;
+
             result.put("code", 200);
             result.put("logs", logs);
             result.put("batchList", batchList);
             result.put("total", logs.size());
+            result.put("nextLogId", nextLogId);
 
             log.info("获取到 {} 条预测日志，{} 个批次", logs.size(), batchList.size());
 
@@ -185,139 +371,115 @@ public class DB4AIService {
     }
 
     /**
-     * 获取预测详情(从日志表解析)
+     * 将批次中指定物料的预测日志转换为结构化预测结果，已写入的 (批次, 物料) 跳过，重试批次不会重复
+     * 日志格式: "物料 MAT00003: 当前=354.78, 变化=17.32, 预测=372.10"
+     */
+    private int savePredictionResults(String batchId, List<String> materialIds) {
+        String placeholders = String.join(",", Collections.nCopies(materialIds.size(), "?"));
+        String insertSql = "INSERT INTO stock_prediction_result " +
+                "(batch_id, material_id, current_stock, predicted_change, predicted_stock) " +
+                "SELECT batch_id, material_id, " +
+                "COALESCE(CAST(SUBSTRING(message FROM '当前=([0-9.]+)') AS NUMERIC), 0), " +
+                "COALESCE(CAST(SUBSTRING(message FROM '变化=(-?[0-9.]+)') AS NUMERIC), 0), " +
+                "COALESCE(CAST(SUBSTRING(message FROM '预测=([0-9.]+)') AS NUMERIC), 0) " +
+                "FROM stock_prediction_log " +
+                "WHERE batch_id = ? " +
+                "AND material_id IN (" + placeholders + ") " +
+                "AND message LIKE '物料%当前=%' " +
+                "ORDER BY log_id " +
+                "ON CONFLICT (batch_id, material_id) DO NOTHING";
+        List<Object> params = new ArrayList<>();
+        params.add(batchId);
+        params.addAll(materialIds);
+        return jdbcTemplate.update(insertSql, params.toArray());
+    }
+
+    /**
+     * 获取预测详情(从结构化预测结果表读取)
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> getPredictionDetails() {
         Map<String, Object> result = new HashMap<>();
         try {
-            // 🔥 从日志表获取最新批次
-            String latestBatchSql = "SELECT batch_id FROM stock_prediction_log " +
-                    "WHERE log_level = 'SUCCESS' AND message LIKE '%批次ID:%' " +
-                    "ORDER BY log_time DESC LIMIT 1";
-
-            String batchId = null;
-            try {
-                batchId = jdbcTemplate.queryForObject(latestBatchSql, String.class);
-            } catch (Exception e) {
-                log.warn("未找到预测批次", e);
-            }
+            // 🔥 已发布批次：结果按分片提交，未发布批次的部分结果不可见
+            String latestBatchSql = "SELECT batch_id FROM stock_alert_publish WHERE alert_type = '低库存'";
+            String batchId = jdbcTemplate.query(latestBatchSql, rs -> rs.next() ? rs.getString(1) : null);
 
             if (batchId == null) {
-                // 没有批次,尝试获取最新的批次
-                try {
-                    batchId = jdbcTemplate.queryForObject(
-                            "SELECT batch_id FROM stock_prediction_log ORDER BY log_time DESC LIMIT 1",
-                            String.class
-                    );
-                } catch (Exception e) {
-                    log.warn("未找到任何批次", e);
-                    // 没有批次，返回空结果
-                    result.put("code", 200);
-                    result.put("message", "无预测数据");
-                    result.put("stats", Collections.emptyMap());
-                    result.put("details", Collections.emptyList());
-                    result.put("changeStats", Collections.emptyMap());
-                    result.put("batchId", null);
-                    return result;
-                }
+                // 没有批次，返回空结果
+                result.put("code", 200);
+                result.put("message", "无预测数据");
+                result.put("stats", Collections.emptyMap());
+                result.put("details", Collections.emptyList());
+                result.put("changeStats", Collections.emptyMap());
+                result.put("batchId", null);
+                return result;
             }
 
-            // 🔥 从日志表解析预测详情
-            String logSql = "SELECT " +
-                    "material_id, " +
-                    "message, " +
-                    "log_level, " +
-                    "log_time " +
-                    "FROM stock_prediction_log " +
-                    "WHERE batch_id = ? " +
-                    "AND material_id IS NOT NULL " +
-                    "AND message LIKE '物料%当前=%' " +
-                    "ORDER BY log_id";
-
-            List<Map<String, Object>> logs = jdbcTemplate.queryForList(logSql, batchId);
+            // 🔥 单次关联查询获取预测详情、物料名称和安全库存
+            String detailSql = "SELECT " +
+                    "r.material_id, " +
+                    "COALESCE(m.material_name, r.material_id) AS material_name, " +
+                    "COALESCE(m.safe_stock_min, 0) AS safe_stock_min, " +
+                    "r.current_stock, " +
+                    "r.predicted_change, " +
+                    "r.predicted_stock " +
+                    "FROM stock_prediction_result r " +
+                    "LEFT JOIN material m ON r.material_id = m.material_id " +
+                    "WHERE r.batch_id = ? " +
+                    "ORDER BY r.result_id";
+
+            List<Map<String, Object>> details = jdbcTemplate.query(detailSql, (rs, rowNum) -> {
+                Map<String, Object> detail = new HashMap<>();
+                BigDecimal safeStockMin = rs.getBigDecimal("safe_stock_min");
+                BigDecimal predictedStock = rs.getBigDecimal("predicted_stock");
+                BigDecimal change = rs.getBigDecimal("predicted_change");
+
+                detail.put("material_id", rs.getString("material_id"));
+                detail.put("material_name", rs.getString("material_name"));
+                detail.put("safe_stock_min", safeStockMin);
+                detail.put("current_stock", rs.getBigDecimal("current_stock"));
+                detail.put("predicted_change", change);
+                detail.put("predicted_stock", predictedStock);
+
+                // 判断状态
+                String status;
+                if (predictedStock.compareTo(safeStockMin) < 0) {
+                    status = "需要预警";
+                } else if (change.compareTo(BigDecimal.ZERO) < 0) {
+                    status = "库存下降";
+                } else {
+                    status = "库存上升";
+                }
+                detail.put("prediction_status", status);
+                return detail;
+            }, batchId);
 
-            // 解析日志消息
-            List<Map<String, Object>> details = new ArrayList<>();
+            // 统计信息
             int increaseCount = 0;
             int decreaseCount = 0;
             double totalChange = 0;
-            int validCount = 0;
-
-            for (Map<String, Object> log : logs) {
-                String message = (String) log.get("message");
-                String materialId = (String) log.get("material_id");
-
-                // 解析消息: "物料 MAT00003: 当前=354.78, 变化=17.32, 预测=372.10"
-                Map<String, Object> detail = parseLogMessage(message, materialId);
-                if (detail != null) {
-                    details.add(detail);
-
-                    // 统计变化
-                    BigDecimal change = (BigDecimal) detail.get("predicted_change");
-                    if (change != null) {
-                        if (change.compareTo(BigDecimal.ZERO) > 0) {
-                            increaseCount++;
-                        } else if (change.compareTo(BigDecimal.ZERO) < 0) {
-                            decreaseCount++;
-                        }
-                        totalChange += change.doubleValue();
-                        validCount++;
-                    }
-                }
-            }
+            long lowStockCount = 0;
+            BigDecimal minChange = null;
+            BigDecimal maxChange = null;
 
-            // 补充物料名称和安全库存
             for (Map<String, Object> detail : details) {
-                String materialId = (String) detail.get("material_id");
-                try {
-                    String materialSql = "SELECT material_name, safe_stock_min FROM material WHERE material_id = ?";
-                    Map<String, Object> material = jdbcTemplate.queryForMap(materialSql, materialId);
-                    detail.put("material_name", material.get("material_name"));
-
-                    // 处理 safe_stock_min 类型转换问题
-                    Object safeStockMinObj = material.get("safe_stock_min");
-                    BigDecimal safeStockMin = null;
-                    if (safeStockMinObj instanceof BigDecimal) {
-                        safeStockMin = (BigDecimal) safeStockMinObj;
-                    } else if (safeStockMinObj instanceof Number) {
-                        safeStockMin = new BigDecimal(((Number) safeStockMinObj).doubleValue());
-                    } else if (safeStockMinObj != null) {
-                        safeStockMin = new BigDecimal(safeStockMinObj.toString());
-                    } else {
-                        safeStockMin = BigDecimal.ZERO;
-                    }
-                    detail.put("safe_stock_min", safeStockMin);
-
-                    // 判断状态
-                    BigDecimal predictedStock = (BigDecimal) detail.get("predicted_stock");
-                    BigDecimal change = (BigDecimal) detail.get("predicted_change");
-
-                    String status;
-                    if (predictedStock.compareTo(safeStockMin) < 0) {
-                        status = "需要预警";
-                    } else if (change.compareTo(BigDecimal.ZERO) < 0) {
-                        status = "库存下降";
-                    } else {
-                        status = "库存上升";
-                    }
-                    detail.put("prediction_status", status);
-                } catch (Exception e) {
-                    log.warn("获取物料 {} 信息失败", materialId, e);
-                    // 设置默认值
-                    detail.put("material_name", materialId);
-                    detail.put("safe_stock_min", BigDecimal.ZERO);
-                    detail.put("prediction_status", "未知");
+                BigDecimal change = (BigDecimal) detail.get("predicted_change");
+                if (change.compareTo(BigDecimal.ZERO) > 0) {
+                    increaseCount++;
+                } else if (change.compareTo(BigDecimal.ZERO) < 0) {
+                    decreaseCount++;
+                }
+                totalChange += change.doubleValue();
+                minChange = minChange == null || change.compareTo(minChange) < 0 ? change : minChange;
+                maxChange = maxChange == null || change.compareTo(maxChange) > 0 ? change : maxChange;
+                if ("需要预警".equals(detail.get("prediction_status"))) {
+                    lowStockCount++;
                 }
             }
 
-            // 统计信息 - 修复类型转换问题
             Map<String, Object> stats = new HashMap<>();
             stats.put("total_predictions", details.size());
-
-            // 使用 long 类型计数，避免 Integer 转换问题
-            long lowStockCount = details.stream()
-                    .filter(d -> "需要预警".equals(d.get("prediction_status")))
-                    .count();
             stats.put("low_stock_count", lowStockCount);
             stats.put("safe_count", details.size() - lowStockCount);
 
@@ -325,22 +487,9 @@ public class DB4AIService {
             Map<String, Object> changeStats = new HashMap<>();
             changeStats.put("increase_count", increaseCount);
             changeStats.put("decrease_count", decreaseCount);
-            changeStats.put("avg_change", validCount > 0 ? totalChange / validCount : 0);
-
-            // 计算最小和最大变化
-            BigDecimal minChange = details.stream()
-                    .map(d -> (BigDecimal) d.get("predicted_change"))
-                    .filter(Objects::nonNull)
-                    .min(BigDecimal::compareTo)
-                    .orElse(BigDecimal.ZERO);
-            BigDecimal maxChange = details.stream()
-                    .map(d -> (BigDecimal) d.get("predicted_change"))
-                    .filter(Objects::nonNull)
-                    .max(BigDecimal::compareTo)
-                    .orElse(BigDecimal.ZERO);
-
-            changeStats.put("min_change", minChange);
-            changeStats.put("max_change", maxChange);
+            changeStats.put("avg_change", details.isEmpty() ? 0 : totalChange / details.size());
+            changeStats.put("min_change", minChange != null ? minChange : BigDecimal.ZERO);
+            changeStats.put("max_change", maxChange != null ? maxChange : BigDecimal.ZERO);
 
             result.put("code", 200);
             result.put("message", "获取预测详情成功");
@@ -349,7 +498,7 @@ public class DB4AIService {
             result.put("changeStats", changeStats);
             result.put("batchId", batchId);
 
-            log.info("从日志表解析出 {} 条预测详情", details.size());
+            log.info("批次 {} 共 {} 条预测详情", batchId, details.size());
 
         } catch (Exception e) {
             log.error("获取预测详情失败", e);
@@ -363,133 +512,150 @@ public class DB4AIService {
     }
 
     /**
-     * 解析日志消息
-     * 示例: "物料 MAT00003: 当前=354.78, 变化=17.32, 预测=372.10"
+     * 获取采购推荐清单(仅AI预测结果)
      */
-    private Map<String, Object> parseLogMessage(String message, String materialId) {
+    public List<DB4AIPredictDTO> getPurchaseRecommendations() {
+        RecommendationCache current = recommendationCache;
+        if (current != null) {
+            return current.data;
+        }
         try {
-            if (message == null || !message.contains("当前=")) {
-                return null;
-            }
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("material_id", materialId);
-
-            // 使用正则表达式提取数值
-            String currentPattern = "当前=([0-9.]+)";
-            String changePattern = "变化=(-?[0-9.]+)";
-            String predictedPattern = "预测=([0-9.]+)";
-
-            java.util.regex.Pattern pCurrent = java.util.regex.Pattern.compile(currentPattern);
-            java.util.regex.Pattern pChange = java.util.regex.Pattern.compile(changePattern);
-            java.util.regex.Pattern pPredicted = java.util.regex.Pattern.compile(predictedPattern);
-
-            java.util.regex.Matcher mCurrent = pCurrent.matcher(message);
-            java.util.regex.Matcher mChange = pChange.matcher(message);
-            java.util.regex.Matcher mPredicted = pPredicted.matcher(message);
-
-            if (mCurrent.find()) {
-                result.put("current_stock", new BigDecimal(mCurrent.group(1)));
-            }
-
-            if (mChange.find()) {
-                result.put("predicted_change", new BigDecimal(mChange.group(1)));
-            }
+            return loadAndCacheRecommendations().data;
+        } catch (Exception e) {
+            log.error("获取采购推荐失败", e);
+            return Collections.emptyList();
+        }
+    }
 
-            if (mPredicted.find()) {
-                result.put("predicted_stock", new BigDecimal(mPredicted.group(1)));
-            }
+    /**
+     * 获取采购推荐及缓存状态。推荐列表按已发布批次缓存，
+     * 由新预测批次、预警处理和物料库存变更失效
+     */
+    public Map<String, Object> getPurchaseRecommendationsWithCacheStatus() {
+        RecommendationCache current = recommendationCache;
+        boolean hit = current != null;
+        if (!hit) {
+            current = loadAndCacheRecommendations();
+        }
+        Map<String, Object> cache = new HashMap<>();
+        cache.put("hit", hit);
+        cache.put("batchId", current.batchId);
+        cache.put("cacheTime", current.cacheTime);
 
-            return result;
+        Map<String, Object> result = new HashMap<>();
+        result.put("data", current.data);
+        result.put("cache", cache);
+        return result;
+    }
 
-        } catch (Exception e) {
-            log.warn("解析日志消息失败: {}", message, e);
-            return null;
+    private RecommendationCache loadAndCacheRecommendations() {
+        long version = recommendationVersion.get();
+        RecommendationCache loaded = loadPurchaseRecommendations();
+        // 加载期间发生失效时不回写缓存，避免缓存旧数据
+        if (recommendationVersion.get() == version) {
+            recommendationCache = loaded;
         }
+        return loaded;
     }
 
     /**
-     * 获取采购推荐清单(仅AI预测结果)
+     * 使采购推荐缓存失效；在事务中调用时于提交后失效，避免并发读取回写未提交前的旧数据
      */
-    public List<DB4AIPredictDTO> getPurchaseRecommendations() {
-        try {
-            List<DB4AIPredictDTO> predictions = new ArrayList<>();
-
-            // 🔥 只查询AI预测结果（stock_alert中的数据）
-            String predictionSql = "SELECT " +
-                    "m.material_id, " +
-                    "m.material_name, " +
-                    "m.current_stock, " +
-                    "m.safe_stock_min, " +
-                    "m.safe_stock_max, " +
-                    "sa.current_stock as predicted_stock, " +
-                    "sa.safe_threshold, " +
-                    "(sa.current_stock - m.current_stock) as predicted_change " +
-                    "FROM stock_alert sa " +
-                    "JOIN material m ON sa.material_id = m.material_id " +
-                    "WHERE sa.alert_type = '低库存' " +
-                    "AND sa.status = '未处理' " +
-                    // 🔥 只显示有预测变化的（排除变化为0的）
-                    "AND ABS(sa.current_stock - m.current_stock) > 0.01 " +
-                    "ORDER BY (m.safe_stock_min - sa.current_stock) DESC";
-
-            log.info("查询AI预测数据...");
-
-            predictions = jdbcTemplate.query(predictionSql, (rs, rowNum) -> {
-                DB4AIPredictDTO dto = new DB4AIPredictDTO();
-                dto.setMaterialId(rs.getString("material_id"));
-                dto.setMaterialName(rs.getString("material_name"));
-                dto.setCurrentStock(rs.getBigDecimal("current_stock"));
-                dto.setSafeStockMin(rs.getBigDecimal("safe_stock_min"));
-                dto.setPredictedStock(rs.getBigDecimal("predicted_stock"));
-                dto.setPredictedChange(rs.getBigDecimal("predicted_change"));
-                dto.setDayNum(14);
-                dto.setPredictionSource("AI预测");
-                return dto;
+    public void invalidatePurchaseRecommendations() {
+        clearRecommendationCache();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clearRecommendationCache();
+                }
             });
+        }
+    }
 
-            log.info("获取到 {} 条AI预测数据", predictions.size());
-
-            return predictions;
+    private void clearRecommendationCache() {
+        recommendationVersion.incrementAndGet();
+        recommendationCache = null;
+    }
 
-        } catch (Exception e) {
-            log.error("获取采购推荐失败", e);
-            return Collections.emptyList();
-        }
+    private RecommendationCache loadPurchaseRecommendations() {
+        RecommendationCache loaded = new RecommendationCache();
+        List<String> batchIds = jdbcTemplate.queryForList(
+                "SELECT batch_id FROM stock_alert_publish WHERE alert_type = '低库存'", String.class);
+        loaded.batchId = batchIds.isEmpty() ? null : batchIds.get(0);
+
+        // 🔥 只查询AI预测结果（stock_alert中的数据）
+        String predictionSql = "SELECT " +
+                "m.material_id, " +
+                "m.material_name, " +
+                "m.current_stock, " +
+                "m.safe_stock_min, " +
+                "m.safe_stock_max, " +
+                "sa.current_stock as predicted_stock, " +
+                "sa.safe_threshold, " +
+                "(sa.current_stock - m.current_stock) as predicted_change " +
+                "FROM stock_alert sa " +
+                "JOIN material m ON sa.material_id = m.material_id " +
+                "JOIN stock_alert_publish p ON p.alert_type = sa.alert_type AND p.batch_id = sa.batch_id " +
+                "WHERE sa.alert_type = '低库存' " +
+                "AND sa.status = '未处理' " +
+                // 🔥 只显示有预测变化的（排除变化为0的）
+                "AND ABS(sa.current_stock - m.current_stock) > 0.01 " +
+                "ORDER BY (m.safe_stock_min - sa.current_stock) DESC";
+
+        log.info("查询AI预测数据...");
+
+        List<DB4AIPredictDTO> predictions = jdbcTemplate.query(predictionSql, (rs, rowNum) -> {
+            DB4AIPredictDTO dto = new DB4AIPredictDTO();
+            dto.setMaterialId(rs.getString("material_id"));
+            dto.setMaterialName(rs.getString("material_name"));
+            dto.setCurrentStock(rs.getBigDecimal("current_stock"));
+            dto.setSafeStockMin(rs.getBigDecimal("safe_stock_min"));
+            dto.setPredictedStock(rs.getBigDecimal("predicted_stock"));
+            dto.setPredictedChange(rs.getBigDecimal("predicted_change"));
+            dto.setDayNum(14);
+            dto.setPredictionSource("AI预测");
+            return dto;
+        });
+
+        log.info("获取到 {} 条AI预测数据，批次 {}", predictions.size(), loaded.batchId);
+
+        loaded.data = Collections.unmodifiableList(predictions);
+        loaded.cacheTime = LocalDateTime.now();
+        return loaded;
     }
 
 
     /**
      * 获取异常出入库记录
      */
-    public List<AnomalyDetectionDTO> getAnomalyRecords(LocalDate startDate, LocalDate endDate, boolean useMock) {
-            // 先检查异常检测视图是否存在
-            String viewCheckSql = "SELECT COUNT(*) FROM information_schema.views WHERE table_name = 'v_anomaly_inout_loose_4517'";
-            Integer viewCount = jdbcTemplate.queryForObject(viewCheckSql, Integer.class);
-            if (viewCount == null || viewCount == 0) {
-                log.warn("异常检测视图不存在，使用模拟数据");
-
-            }
+    @Transactional(readOnly = true)
+    public List<AnomalyDetectionDTO> getAnomalyRecords(LocalDate startDate, LocalDate endDate) {
+            // 从实时打分写入的异常表读取，不再实时计算异常检测视图
             StringBuilder sql = new StringBuilder(
                     "SELECT " +
-                            "record_id, material_id, material_name, quantity, " +
-                            "operator_id, operator_name, operation_time, remark, " +
-                            "before_stock, after_stock, cluster, " +
-                            "anomaly_reason, z_score " +
-                            "FROM v_anomaly_inout_loose_4517 " +
-                            "WHERE anomaly_reason LIKE '%超出历史均值%' "
+                            "ia.record_id, ia.material_id, m.material_name, ia.quantity, " +
+                            "ir.operator_id, o.operator_name, ia.operation_time, ir.remark, " +
+                            "ir.before_stock, ir.after_stock, ia.cluster, " +
+                            "ia.anomaly_reason, ia.z_score " +
+                            "FROM inout_anomaly ia " +
+                            "LEFT JOIN inout_record ir ON ia.record_id = ir.record_id " +
+                            "LEFT JOIN material m ON ia.material_id = m.material_id " +
+                            "LEFT JOIN operator o ON ir.operator_id = o.operator_id " +
+                            "WHERE 1=1 "
             );
             List<Object> params = new ArrayList<>();
 
             if (startDate != null) {
-                sql.append(" AND operation_time >= ? ");
+                sql.append(" AND ia.operation_time >= ? ");
                 params.add(startDate.atStartOfDay());
             }
             if (endDate != null) {
-                sql.append(" AND operation_time <= ? ");
+                sql.append(" AND ia.operation_time <= ? ");
                 params.add(endDate.atTime(23, 59, 59));
             }
-            sql.append(" ORDER BY z_score DESC NULLS LAST LIMIT 100");
+            // 走 idx_inout_anomaly_zscore 索引顺序扫描
+            sql.append(" ORDER BY ia.z_score DESC NULLS LAST LIMIT 100");
 
             log.info("执行异常检测查询: {}", sql.toString());
 
@@ -522,46 +688,76 @@ public class DB4AIService {
 
 
     /**
-     * 获取系统状态和DB4AI组件信息
+     * 获取系统状态和DB4AI组件信息（带TTL缓存，读到过期缓存时刷新）。
+     * 同一时间只有一个线程刷新：已有旧缓存的请求直接返回旧值，首次无缓存的请求等待刷新结果
+     *
+     * @param exact 为 true 时返回精确行数（全表 COUNT，不走缓存）
      */
-    public Map<String, Object> getSystemStatus() {
+    public Map<String, Object> getSystemStatus(boolean exact) {
+        if (exact) {
+            return buildSystemStatus(true);
+        }
+        Map<String, Object> cached = cachedStatus;
+        if (cached != null && System.currentTimeMillis() - cachedStatusTime <= statusCacheTtlMs) {
+            return cached;
+        }
+        if (cached != null) {
+            if (!statusRefreshLock.tryLock()) {
+                return cached;
+            }
+        } else {
+            statusRefreshLock.lock();
+        }
+        try {
+            // 等锁期间其他线程可能已刷新
+            if (cachedStatus == null || System.currentTimeMillis() - cachedStatusTime > statusCacheTtlMs) {
+                refreshSystemStatus();
+            }
+            return cachedStatus;
+        } finally {
+            statusRefreshLock.unlock();
+        }
+    }
+
+    /**
+     * 刷新系统状态缓存，失败时保留旧缓存
+     */
+    private void refreshSystemStatus() {
+        Map<String, Object> status = buildSystemStatus(false);
+        if (!status.containsKey("error")) {
+            cachedStatus = Collections.unmodifiableMap(status);
+            cachedStatusTime = System.currentTimeMillis();
+        } else if (cachedStatus == null) {
+            cachedStatus = status;
+        }
+    }
+
+    private Map<String, Object> buildSystemStatus(boolean exact) {
         Map<String, Object> status = new HashMap<>();
         try {
             // 1. 检查数据库连接
             status.put("database", "已连接");
 
-            // 2. 检查表数据量
-            String[] tables = {"material", "inout_record", "supplier", "stock_alert"};
-            Map<String, Integer> tableStats = new HashMap<>();
-            for (String table : tables) {
-                try {
-                    String sql = "SELECT COUNT(*) FROM " + table;
-                    Integer count = jdbcTemplate.queryForObject(sql, Integer.class);
-                    tableStats.put(table, count != null ? count : 0);
-                } catch (Exception e) {
-                    tableStats.put(table, 0);
-                }
-            }
-            status.put("tableStats", tableStats);
+            // 2. 检查表数据量（默认使用 pg_class 统计估算值）
+            status.put("tableStats", exact ? countTablesExact() : estimateTableRows());
+            status.put("tableStatsExact", exact);
 
             // 3. 检查DB4AI组件
             Map<String, Boolean> components = checkDB4AIComponents();
             status.put("db4aiComponents", components);
 
-            // 4. 检查历史数据
-            String historySql = "SELECT COUNT(*) FROM inout_record WHERE operation_time >= CURRENT_DATE - INTERVAL '60 days'";
-            Integer historyCount = jdbcTemplate.queryForObject(historySql, Integer.class);
-            status.put("recentHistoryCount", historyCount != null ? historyCount : 0);
-
-            // 5. 检查预测数据
-            String predictionSql = "SELECT COUNT(*) FROM stock_alert WHERE alert_type = '低库存'";
-            Integer predictionCount = jdbcTemplate.queryForObject(predictionSql, Integer.class);
-            status.put("predictionCount", predictionCount != null ? predictionCount : 0);
-
-            // 6. 检查物料数据
-            String materialSql = "SELECT COUNT(*) FROM material WHERE status = '正常' AND safe_stock_min > 0";
-            Integer materialCount = jdbcTemplate.queryForObject(materialSql, Integer.class);
-            status.put("validMaterialCount", materialCount != null ? materialCount : 0);
+            // 4-6. 历史数据、预测数据、物料数据合并为一次查询
+            String countSql = "SELECT " +
+                    "(SELECT COUNT(*) FROM inout_record WHERE operation_time >= CURRENT_DATE - INTERVAL '60 days') AS history_count, " +
+                    "(SELECT COUNT(*) FROM stock_alert sa JOIN stock_alert_publish p " +
+                    "ON p.alert_type = sa.alert_type AND p.batch_id = sa.batch_id " +
+                    "WHERE sa.alert_type = '低库存') AS prediction_count, " +
+                    "(SELECT COUNT(*) FROM material WHERE status = '正常' AND safe_stock_min > 0) AS material_count";
+            Map<String, Object> counts = jdbcTemplate.queryForMap(countSql);
+            status.put("recentHistoryCount", ((Number) counts.get("history_count")).intValue());
+            status.put("predictionCount", ((Number) counts.get("prediction_count")).intValue());
+            status.put("validMaterialCount", ((Number) counts.get("material_count")).intValue());
+            status.put("checkTime", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
 
             log.info("系统状态检查完成: {}", status);
 
@@ -572,69 +768,92 @@ public class DB4AIService {
         return status;
     }
 
+    /**
+     * 从 pg_class 读取规划器行数估算，不扫描表
+     */
+    private Map<String, Long> estimateTableRows() {
+        Map<String, Long> tableStats = new HashMap<>();
+        for (String table : STATUS_TABLES) {
+            tableStats.put(table, 0L);
+        }
+        String placeholders = String.join(",", Collections.nCopies(STATUS_TABLES.length, "?"));
+        String sql = "SELECT c.relname, GREATEST(c.reltuples, 0)::bigint AS estimate " +
+                "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "WHERE c.relkind = 'r' AND n.nspname = current_schema() " +
+                "AND c.relname IN (" + placeholders + ")";
+        jdbcTemplate.query(sql, rs -> {
+            tableStats.put(rs.getString("relname"), rs.getLong("estimate"));
+        }, (Object[]) STATUS_TABLES);
+        return tableStats;
+    }
+
+    /**
+     * 精确行数（全表扫描，仅在显式请求时使用）
+     */
+    private Map<String, Long> countTablesExact() {
+        Map<String, Long> tableStats = new HashMap<>();
+        for (String table : STATUS_TABLES) {
+            try {
+                Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+                tableStats.put(table, count != null ? count : 0L);
+            } catch (Exception e) {
+                tableStats.put(table, 0L);
+            }
+        }
+        return tableStats;
+    }
+
 
     /**
-     * 测试DB4AI模型预测
+     * 测试DB4AI模型预测（目录检查和数据探测各一次查询）
      */
     public Map<String, Object> testDB4AIModels() {
         Map<String, Object> result = new HashMap<>();
         try {
             log.info("开始测试DB4AI模型...");
+            Map<String, Boolean> components = checkDB4AIComponents();
+            boolean xgboostView = Boolean.TRUE.equals(components.get("V_DAILY_STOCK_CHANGE"));
+            boolean kmeansView = Boolean.TRUE.equals(components.get("V_OUT_RECORD_ARRAY_4517"));
+
+            // 只探测已存在的视图，EXISTS 读到第一行即停止
+            List<String> probes = new ArrayList<>();
+            probes.add(xgboostView ? "EXISTS (SELECT 1 FROM V_DAILY_STOCK_CHANGE) AS xgboost_data" : "FALSE AS xgboost_data");
+            probes.add(kmeansView ? "EXISTS (SELECT 1 FROM V_OUT_RECORD_ARRAY_4517) AS kmeans_data" : "FALSE AS kmeans_data");
+            probes.add("(SELECT COUNT(*) FROM material WHERE status = '正常') AS material_count");
+            probes.add("(SELECT GREATEST(c.reltuples, 0)::bigint FROM pg_class c " +
+                    "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                    "WHERE c.relname = 'inout_record' AND c.relkind = 'r' AND n.nspname = current_schema()) AS record_count");
+            probes.add("(SELECT COUNT(*) FROM stock_alert sa JOIN stock_alert_publish p " +
+                    "ON p.alert_type = sa.alert_type AND p.batch_id = sa.batch_id " +
+                    "WHERE sa.alert_type = '低库存') AS prediction_count");
+            Map<String, Object> probe = jdbcTemplate.queryForMap("SELECT " + String.join(", ", probes));
 
             // 1. 测试XGBoost模型
-            String xgboostTestSql = "SELECT COUNT(*) FROM V_DAILY_STOCK_CHANGE LIMIT 1";
-            try {
-                Integer xgboostCount = jdbcTemplate.queryForObject(xgboostTestSql, Integer.class);
-                result.put("xgboostModel", xgboostCount != null && xgboostCount > 0 ? "正常" : "无数据");
-            } catch (Exception e) {
-                result.put("xgboostModel", "不可用: " + e.getMessage());
-            }
+            result.put("xgboostModel", !xgboostView ? "不可用: 视图不存在"
+                    : Boolean.TRUE.equals(probe.get("xgboost_data")) ? "正常" : "无数据");
 
             // 2. 测试K-means模型
-            String kmeansTestSql = "SELECT COUNT(*) FROM V_OUT_RECORD_ARRAY_4517 LIMIT 1";
-            try {
-                Integer kmeansCount = jdbcTemplate.queryForObject(kmeansTestSql, Integer.class);
-                result.put("kmeansModel", kmeansCount != null && kmeansCount > 0 ? "正常" : "无数据");
-            } catch (Exception e) {
-                result.put("kmeansModel", "不可用: " + e.getMessage());
-            }
+            result.put("kmeansModel", !kmeansView ? "不可用: 视图不存在"
+                    : Boolean.TRUE.equals(probe.get("kmeans_data")) ? "正常" : "无数据");
 
             // 3. 检查预测存储过程
-            String procCheckSql = "SELECT COUNT(*) FROM pg_proc WHERE proname = 'sp_predict_stock_warning'";
-            try {
-                Integer procCount = jdbcTemplate.queryForObject(procCheckSql, Integer.class);
-                result.put("predictionProcedure", procCount != null && procCount > 0 ? "存在" : "不存在");
-            } catch (Exception e) {
-                result.put("predictionProcedure", "检查失败: " + e.getMessage());
-            }
+            result.put("predictionProcedure",
+                    Boolean.TRUE.equals(components.get("SP_PREDICT_STOCK_WARNING")) ? "存在" : "不存在");
 
             // 4. 检查视图
-            String[] views = {
-                    "V_DAILY_STOCK_CHANGE",
-                    "V_OUT_RECORD_ARRAY_4517",
-                    "V_MATERIAL_OUT_STATS_4517",
-                    "V_ANOMALY_INOUT_LOOSE_4517"
-            };
-
             Map<String, Boolean> viewStatus = new HashMap<>();
-            for (String view : views) {
-                try {
-                    String checkSql = "SELECT COUNT(*) FROM information_schema.views WHERE table_name = ?";
-                    Integer count = jdbcTemplate.queryForObject(checkSql, Integer.class, view.toLowerCase());
-                    viewStatus.put(view, count != null && count > 0);
-                } catch (Exception e) {
-                    viewStatus.put(view, false);
+            components.forEach((name, present) -> {
+                if (name.startsWith("V_")) {
+                    viewStatus.put(name, present);
                 }
-            }
+            });
             result.put("viewStatus", viewStatus);
 
-            // 5. 数据统计
-            String dataStatsSql = "SELECT " +
-                    "(SELECT COUNT(*) FROM material WHERE status = '正常') as material_count, " +
-                    "(SELECT COUNT(*) FROM inout_record) as record_count, " +
-                    "(SELECT COUNT(*) FROM stock_alert WHERE alert_type = '低库存') as prediction_count";
-
-            Map<String, Object> dataStats = jdbcTemplate.queryForMap(dataStatsSql);
+            // 5. 数据统计（出入库记录数为估算值）
+            Map<String, Object> dataStats = new HashMap<>();
+            dataStats.put("material_count", probe.get("material_count"));
+            dataStats.put("record_count", probe.get("record_count"));
+            dataStats.put("prediction_count", probe.get("prediction_count"));
             result.put("dataStats", dataStats);
 
             result.put("code", 200);
@@ -650,4 +869,13 @@ public class DB4AIService {
         }
         return result;
     }
+
+    /**
+     * 采购推荐缓存快照
+     */
+    private static class RecommendationCache {
+        private String batchId;
+        private List<DB4AIPredictDTO> data;
+        private LocalDateTime cacheTime;
+    }
 }
@@ -0,0 +1,289 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 数据保留：把过期的预警和预测日志按主键顺序分片迁移到归档表。
+ * 每个分片单独提交（先归档再删除），分片之间暂停，避免长事务锁表和WAL暴涨；
+ * 每个分片提交时同时写入 job_watermark 检查点，中断后下次从检查点继续。
+ */
+@Slf4j
+@Service
+public class DataRetentionService {
+
+    /**
+     * 检查点任务名前缀，预警按类型各一个检查点
+     */
+    private static final String ALERT_JOB_PREFIX = "retention_alert:";
+    private static final String LOG_JOB = "retention_prediction_log";
+
+    private static final String ALERT_COLUMNS = "alert_id, material_id, alert_type, current_stock, safe_threshold, " +
+            "alert_time, status, handle_time, handle_remark, batch_id, source";
+    private static final String LOG_COLUMNS = "log_id, batch_id, log_level, material_id, message, log_time, prediction_count";
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 各预警类型保留天数，格式: 类型=天数,类型=天数
+     */
+    @Value("${app.retention.alert-days:低库存=90,高库存=90,预测缺货=30}")
+    private String alertDaysConfig;
+
+    @Value("${app.retention.default-alert-days:90}")
+    private int defaultAlertDays;
+
+    @Value("${app.retention.prediction-log-days:90}")
+    private int predictionLogDays;
+
+    @Value("${app.retention.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.retention.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${app.retention.max-chunks-per-run:200}")
+    private int maxChunksPerRun;
+
+    private Map<String, Integer> alertDays = new LinkedHashMap<>();
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // 累计指标，key: 检查点任务名
+    private final Map<String, AtomicLong> archivedRows = new ConcurrentHashMap<>();
+    private final AtomicLong totalChunks = new AtomicLong();
+    private final AtomicLong failedRuns = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        for (String entry : alertDaysConfig.split(",")) {
+            String[] kv = entry.split("=");
+            if (kv.length == 2 && !kv[0].trim().isEmpty()) {
+                alertDays.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+            }
+        }
+        log.info("数据保留策略: 预警{}，其他预警{}天，预测日志{}天", alertDays, defaultAlertDays, predictionLogDays);
+    }
+
+    /**
+     * 执行一轮归档，已有任务在执行时直接返回
+     */
+    public Map<String, Object> runRetention() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        if (!running.compareAndSet(false, true)) {
+            summary.put("skipped", true);
+            summary.put("message", "归档任务正在执行");
+            return summary;
+        }
+        long start = System.currentTimeMillis();
+        int[] budget = {maxChunksPerRun};
+        try {
+            Map<String, Integer> archived = new LinkedHashMap<>();
+            List<String> alertTypes = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT alert_type FROM stock_alert", String.class);
+            for (String alertType : alertTypes) {
+                int days = alertDays.getOrDefault(alertType, defaultAlertDays);
+                archived.put("预警:" + alertType, archiveAlerts(alertType, days, budget));
+            }
+            archived.put("预测日志", archivePredictionLogs(budget));
+
+            summary.put("archived", archived);
+            summary.put("completed", budget[0] > 0);
+            summary.put("durationMs", System.currentTimeMillis() - start);
+            summary.put("finishTime", LocalDateTime.now().toString());
+            lastRun = summary;
+            log.info("数据归档完成: {}", summary);
+            return summary;
+        } catch (RuntimeException e) {
+            failedRuns.incrementAndGet();
+            throw e;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 归档指标：累计迁移行数、分片数、最近一次运行结果及各检查点
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("running", running.get());
+        metrics.put("archivedRows", archivedRows.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get())));
+        metrics.put("totalChunks", totalChunks.get());
+        metrics.put("failedRuns", failedRuns.get());
+        metrics.put("lastRun", lastRun);
+        metrics.put("checkpoints", jdbcTemplate.queryForList(
+                "SELECT job_name, last_operation_time, last_record_id, update_time FROM job_watermark " +
+                        "WHERE job_name LIKE 'retention%' ORDER BY job_name"));
+        metrics.put("policy", Map.of(
+                "alertDays", alertDays,
+                "defaultAlertDays", defaultAlertDays,
+                "predictionLogDays", predictionLogDays,
+                "chunkSize", chunkSize));
+        return metrics;
+    }
+
+    /**
+     * 归档过期预警：只迁移已处理的预警和已被新批次替代的预测预警，未处理预警保留
+     */
+    private int archiveAlerts(String alertType, int days, int[] budget) {
+        LocalDateTime cutoff = LocalDate.now().minusDays(days).atStartOfDay();
+        String candidateSql = "SELECT sa.alert_id FROM stock_alert sa " +
+                "WHERE sa.alert_type = ? AND sa.alert_time < ? AND sa.alert_id > ? " +
+                "AND (sa.status = '已处理' OR (sa.batch_id IS NOT NULL AND sa.batch_id <> COALESCE(" +
+                "(SELECT p.batch_id FROM stock_alert_publish p WHERE p.alert_type = sa.alert_type), ''))) " +
+                "ORDER BY sa.alert_id LIMIT ?";
+        return archiveInChunks(ALERT_JOB_PREFIX + alertType, "stock_alert", "stock_alert_archive",
+                "alert_id", ALERT_COLUMNS, cutoff, budget,
+                lastId -> jdbcTemplate.queryForList(candidateSql, Long.class,
+                        alertType, Timestamp.valueOf(cutoff), lastId, chunkSize),
+                null);
+    }
+
+    /**
+     * 归档过期预测日志：最新批次和已发布批次的日志保留。
+     * 同一分片事务内同步批次汇总：日志已全部归档的批次删除汇总行，部分归档的按剩余日志重算
+     */
+    private int archivePredictionLogs(int[] budget) {
+        LocalDateTime cutoff = LocalDate.now().minusDays(predictionLogDays).atStartOfDay();
+        String candidateSql = "SELECT l.log_id FROM stock_prediction_log l " +
+                "WHERE l.log_time < ? AND l.log_id > ? " +
+                "AND (l.batch_id IS NULL OR (" +
+                "l.batch_id NOT IN (SELECT p.batch_id FROM stock_alert_publish p) " +
+                "AND l.batch_id <> COALESCE((SELECT b.batch_id FROM stock_prediction_batch b " +
+                "ORDER BY b.end_time DESC LIMIT 1), ''))) " +
+                "ORDER BY l.log_id LIMIT ?";
+        return archiveInChunks(LOG_JOB, "stock_prediction_log", "stock_prediction_log_archive",
+                "log_id", LOG_COLUMNS, cutoff, budget,
+                lastId -> jdbcTemplate.queryForList(candidateSql, Long.class,
+                        Timestamp.valueOf(cutoff), lastId, chunkSize),
+                this::syncBatchSummaries);
+    }
+
+    /**
+     * 按本分片归档的日志所属批次同步 stock_prediction_batch
+     */
+    private void syncBatchSummaries(String placeholders, Object[] logIds) {
+        String affected = "SELECT DISTINCT a.batch_id FROM stock_prediction_log_archive a " +
+                "WHERE a.log_id IN (" + placeholders + ") AND a.batch_id IS NOT NULL";
+        jdbcTemplate.update("DELETE FROM stock_prediction_batch b " +
+                "WHERE b.batch_id IN (" + affected + ") " +
+                "AND NOT EXISTS (SELECT 1 FROM stock_prediction_log l WHERE l.batch_id = b.batch_id)", logIds);
+        jdbcTemplate.update("UPDATE stock_prediction_batch b SET " +
+                "start_time = s.start_time, end_time = s.end_time, log_count = s.log_count, " +
+                "success_count = s.success_count, prediction_count = s.prediction_count " +
+                "FROM (SELECT l.batch_id, MIN(l.log_time) AS start_time, MAX(l.log_time) AS end_time, " +
+                "COUNT(*) AS log_count, SUM(CASE WHEN l.log_level = 'SUCCESS' THEN 1 ELSE 0 END) AS success_count, " +
+                "COALESCE(MAX(l.prediction_count), 0) AS prediction_count " +
+                "FROM stock_prediction_log l WHERE l.batch_id IN (" + affected + ") " +
+                "GROUP BY l.batch_id) s " +
+                "WHERE b.batch_id = s.batch_id", logIds);
+    }
+
+    /**
+     * 按主键顺序分片迁移：每片在一个短事务中插入归档表、删除原表并更新检查点。
+     * 检查点的 last_record_id 记录本轮已处理到的主键，整轮完成后清空，下轮从头扫描新过期的数据。
+     *
+     * @param afterDelete 删除原表后在同一事务内执行的同步逻辑(主键占位符, 主键)，可为空
+     */
+    private int archiveInChunks(String jobName, String sourceTable, String archiveTable, String idColumn,
+                                String columns, LocalDateTime cutoff, int[] budget,
+                                LongFunction<List<Long>> candidates,
+                                BiConsumer<String, Object[]> afterDelete) {
+        long lastId = loadCheckpoint(jobName, cutoff);
+        int moved = 0;
+        while (budget[0] > 0) {
+            List<Long> ids = candidates.apply(lastId);
+            if (ids.isEmpty()) {
+                saveCheckpoint(jobName, cutoff, "");
+                break;
+            }
+            long chunkLastId = ids.get(ids.size() - 1);
+            String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+            Object[] params = ids.toArray();
+            Integer count = transactionTemplate.execute(status -> {
+                jdbcTemplate.update("INSERT INTO " + archiveTable + " (" + columns + ") " +
+                        "SELECT " + columns + " FROM " + sourceTable +
+                        " WHERE " + idColumn + " IN (" + placeholders + ") " +
+                        "ON CONFLICT (" + idColumn + ") DO NOTHING", params);
+                int deleted = jdbcTemplate.update("DELETE FROM " + sourceTable +
+                        " WHERE " + idColumn + " IN (" + placeholders + ")", params);
+                if (afterDelete != null) {
+                    afterDelete.accept(placeholders, params);
+                }
+                saveCheckpoint(jobName, cutoff, String.valueOf(chunkLastId));
+                return deleted;
+            });
+            lastId = chunkLastId;
+            moved += count == null ? 0 : count;
+            archivedRows.computeIfAbsent(jobName, k -> new AtomicLong()).addAndGet(count == null ? 0 : count);
+            totalChunks.incrementAndGet();
+            budget[0]--;
+            if (ids.size() < chunkSize) {
+                saveCheckpoint(jobName, cutoff, "");
+                break;
+            }
+            pause();
+        }
+        if (moved > 0) {
+            log.info("归档 {} -> {}: {} 行", sourceTable, archiveTable, moved);
+        }
+        return moved;
+    }
+
+    /**
+     * 读取检查点：上一轮未完成时从记录的主键继续
+     */
+    private long loadCheckpoint(String jobName, LocalDateTime cutoff) {
+        List<String> ids = jdbcTemplate.queryForList(
+                "SELECT last_record_id FROM job_watermark WHERE job_name = ?", String.class, jobName);
+        if (ids.isEmpty()) {
+            jdbcTemplate.update(
+                    "INSERT INTO job_watermark (job_name, last_operation_time, last_record_id) VALUES (?, ?, '')",
+                    jobName, Timestamp.valueOf(cutoff));
+            return 0L;
+        }
+        String lastId = ids.get(0);
+        return lastId == null || lastId.isEmpty() ? 0L : Long.parseLong(lastId);
+    }
+
+    private void saveCheckpoint(String jobName, LocalDateTime cutoff, String lastId) {
+        jdbcTemplate.update(
+                "UPDATE job_watermark SET last_operation_time = ?, last_record_id = ?, update_time = CURRENT_TIMESTAMP " +
+                        "WHERE job_name = ?",
+                Timestamp.valueOf(cutoff), lastId, jobName);
+    }
+
+    private void pause() {
+        if (pauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
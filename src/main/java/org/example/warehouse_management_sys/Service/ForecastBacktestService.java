@@ -0,0 +1,281 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.DTO.BacktestReportDTO;
+import org.example.warehouse_management_sys.DTO.BacktestReportDTO.MaterialAccuracy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 预测回测服务
+ * 以滚动截止点回放历史日出库数据：每个截止点用之前 trainDays 天训练，
+ * 预测之后 horizonDays 天的累计出库，与实际值比较计算 MAPE 和偏差，
+ * 同时记录耗时、吞吐和内存，报告写入 forecast_backtest_report 便于横向对比。
+ * 数据可来自 inout_record，也可使用本地按种子生成的模拟数据离线运行。
+ */
+@Slf4j
+@Service
+public class ForecastBacktestService {
+
+    public static final String SOURCE_DB = "db";
+    public static final String SOURCE_SYNTHETIC = "synthetic";
+
+    /**
+     * 报告中返回误差最大的物料数
+     */
+    private static final int WORST_MATERIALS = 20;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.db4ai.prediction.days-ahead:14}")
+    private int horizonDays;
+
+    @Value("${app.db4ai.backtest.engine:MOVING_AVERAGE}")
+    private String defaultEngine;
+
+    @Value("${app.db4ai.backtest.history-days:365}")
+    private int defaultHistoryDays;
+
+    @Value("${app.db4ai.backtest.max-history-days:1095}")
+    private int maxHistoryDays;
+
+    @Value("${app.db4ai.backtest.synthetic-materials:500}")
+    private int defaultSyntheticMaterials;
+
+    @Value("${app.db4ai.backtest.max-synthetic-materials:5000}")
+    private int maxSyntheticMaterials;
+
+    @Value("${app.db4ai.backtest.train-days:56}")
+    private int trainDays;
+
+    @Value("${app.db4ai.backtest.step-days:7}")
+    private int stepDays;
+
+    @Value("${app.db4ai.backtest.smoothing-alpha:0.3}")
+    private double smoothingAlpha;
+
+    /**
+     * 预测引擎：根据训练窗口给出预测期内的日均出库量
+     */
+    public enum Engine {
+        MOVING_AVERAGE,
+        EXPONENTIAL
+    }
+
+    public BacktestReportDTO runBacktest(String engineName, String source, Integer historyDays,
+                                         Integer syntheticMaterials, Long seed) {
+        Engine engine = resolveEngine(engineName);
+        String dataSource = SOURCE_SYNTHETIC.equalsIgnoreCase(source) ? SOURCE_SYNTHETIC : SOURCE_DB;
+        // 历史天数和模拟物料数按配置上限截断，数据全部在内存中生成和计算
+        int days = historyDays == null || historyDays <= 0 ? defaultHistoryDays : Math.min(historyDays, maxHistoryDays);
+        int materials = syntheticMaterials == null || syntheticMaterials <= 0
+                ? defaultSyntheticMaterials : Math.min(syntheticMaterials, maxSyntheticMaterials);
+        if (days < trainDays + horizonDays) {
+            throw new IllegalArgumentException("历史天数不足，至少需要 " + (trainDays + horizonDays) + " 天");
+        }
+
+        long loadStart = System.currentTimeMillis();
+        Map<String, double[]> series = SOURCE_SYNTHETIC.equals(dataSource)
+                ? generateSynthetic(materials, days, seed == null ? 42L : seed)
+                : loadSeries(days);
+        long loadMillis = System.currentTimeMillis() - loadStart;
+
+        Runtime runtime = Runtime.getRuntime();
+        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+
+        List<MaterialAccuracy> accuracies = series.entrySet().parallelStream()
+                .map(entry -> evaluate(entry.getKey(), entry.getValue(), engine))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        long wallNanos = System.nanoTime() - start;
+        long memoryBytes = Math.max(0, runtime.totalMemory() - runtime.freeMemory() - memoryBefore);
+
+        BacktestReportDTO report = new BacktestReportDTO();
+        report.setEngine(engine.name());
+        report.setSource(dataSource);
+        report.setMaterialCount(series.size());
+        report.setHistoryDays(days);
+        report.setTrainDays(trainDays);
+        report.setHorizonDays(horizonDays);
+        report.setStepDays(stepDays);
+        report.setCutoffCount(accuracies.stream().mapToInt(MaterialAccuracy::getCutoffs).sum());
+        report.setMape(average(accuracies, MaterialAccuracy::getMape));
+        report.setBias(average(accuracies, MaterialAccuracy::getBias));
+        report.setLoadMillis(loadMillis);
+        report.setWallMillis(wallNanos / 1_000_000);
+        report.setRowsPerSecond(wallNanos == 0 ? 0 : (long) series.size() * days * 1_000_000_000L / wallNanos);
+        report.setMemoryBytes(memoryBytes);
+        report.setRunTime(LocalDateTime.now());
+        report.setMaterials(accuracies.stream()
+                .sorted(Comparator.comparing(MaterialAccuracy::getMape).reversed())
+                .limit(WORST_MATERIALS)
+                .collect(Collectors.toList()));
+
+        saveReport(report);
+        log.info("预测回测完成: 引擎={}, 数据={}, 物料={}, 截止点={}, MAPE={}%, 偏差={}%, 耗时={}ms, 吞吐={}行/秒",
+                report.getEngine(), report.getSource(), report.getMaterialCount(), report.getCutoffCount(),
+                report.getMape(), report.getBias(), report.getWallMillis(), report.getRowsPerSecond());
+        return report;
+    }
+
+    /**
+     * 查询最近的回测报告
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getRecentReports(int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT * FROM forecast_backtest_report ORDER BY run_time DESC LIMIT ?", limit);
+    }
+
+    /**
+     * 对单个物料滚动回测，没有可评估截止点（预测期实际出库全为0）时返回 null
+     */
+    private MaterialAccuracy evaluate(String materialId, double[] daily, Engine engine) {
+        int cutoffs = 0;
+        double apeSum = 0;
+        double errorSum = 0;
+        double actualSum = 0;
+        for (int cutoff = trainDays; cutoff + horizonDays <= daily.length; cutoff += stepDays) {
+            double forecast = forecastDailyRate(engine, daily, cutoff - trainDays, cutoff) * horizonDays;
+            double actual = 0;
+            for (int d = cutoff; d < cutoff + horizonDays; d++) {
+                actual += daily[d];
+            }
+            if (actual <= 0) {
+                continue;
+            }
+            cutoffs++;
+            apeSum += Math.abs(forecast - actual) / actual;
+            errorSum += forecast - actual;
+            actualSum += actual;
+        }
+        if (cutoffs == 0) {
+            return null;
+        }
+        MaterialAccuracy accuracy = new MaterialAccuracy();
+        accuracy.setMaterialId(materialId);
+        accuracy.setCutoffs(cutoffs);
+        accuracy.setMape(BigDecimal.valueOf(apeSum / cutoffs * 100).setScale(2, RoundingMode.HALF_UP));
+        accuracy.setBias(BigDecimal.valueOf(errorSum / actualSum * 100).setScale(2, RoundingMode.HALF_UP));
+        return accuracy;
+    }
+
+    /**
+     * 解析预测引擎名称，为空时使用配置的默认引擎
+     */
+    public Engine resolveEngine(String engineName) {
+        return Engine.valueOf((engineName == null || engineName.isEmpty()
+                ? defaultEngine : engineName).toUpperCase());
+    }
+
+    /**
+     * 用 [from, to) 区间的日出库量给出日均出库预测
+     */
+    public double forecastDailyRate(Engine engine, double[] daily, int from, int to) {
+        switch (engine) {
+            case EXPONENTIAL:
+                double level = daily[from];
+                for (int d = from + 1; d < to; d++) {
+                    level = smoothingAlpha * daily[d] + (1 - smoothingAlpha) * level;
+                }
+                return level;
+            case MOVING_AVERAGE:
+            default:
+                double sum = 0;
+                for (int d = from; d < to; d++) {
+                    sum += daily[d];
+                }
+                return sum / (to - from);
+        }
+    }
+
+    /**
+     * 从 inout_record 按物料、日期汇总出库量，数组下标0为最早一天
+     */
+    private Map<String, double[]> loadSeries(int days) {
+        String sql = "SELECT material_id, CAST(operation_time AS DATE) AS op_date, SUM(quantity) AS qty " +
+                "FROM inout_record " +
+                "WHERE inout_type = '出库' " +
+                "AND operation_time >= CURRENT_DATE - CAST(? AS INTEGER) * INTERVAL '1 day' " +
+                "AND operation_time < CURRENT_DATE " +
+                "GROUP BY material_id, CAST(operation_time AS DATE)";
+        LocalDate firstDay = LocalDate.now().minusDays(days);
+        Map<String, double[]> series = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            int index = (int) ChronoUnit.DAYS.between(firstDay, rs.getDate("op_date").toLocalDate());
+            if (index >= 0 && index < days) {
+                series.computeIfAbsent(rs.getString("material_id"), k -> new double[days])[index]
+                        += rs.getDouble("qty");
+            }
+        }, days);
+        return series;
+    }
+
+    /**
+     * 生成模拟数据：每个物料有不同的基础需求、线性趋势和周季节性，叠加随机噪声和零需求日
+     */
+    private Map<String, double[]> generateSynthetic(int materials, int days, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Map<String, double[]> series = new LinkedHashMap<>();
+        for (int m = 0; m < materials; m++) {
+            double base = 5 + random.nextDouble() * 95;
+            double trend = (random.nextDouble() - 0.5) * base / days;
+            double weekly = random.nextDouble() * 0.5;
+            double zeroRate = random.nextDouble() * 0.3;
+            double[] daily = new double[days];
+            for (int d = 0; d < days; d++) {
+                if (random.nextDouble() < zeroRate) {
+                    continue;
+                }
+                double seasonal = 1 + weekly * Math.sin(2 * Math.PI * d / 7);
+                double noise = 1 + (random.nextDouble() - 0.5) * 0.6;
+                daily[d] = Math.max(0, (base + trend * d) * seasonal * noise);
+            }
+            series.put(String.format("SIM%05d", m + 1), daily);
+        }
+        return series;
+    }
+
+    private BigDecimal average(List<MaterialAccuracy> accuracies,
+                               Function<MaterialAccuracy, BigDecimal> field) {
+        if (accuracies.isEmpty()) {
+            return null;
+        }
+        BigDecimal sum = accuracies.stream().map(field).reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sum.divide(BigDecimal.valueOf(accuracies.size()), 2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 报告入库失败不影响回测结果返回（离线运行时可能没有报告表）
+     */
+    private void saveReport(BacktestReportDTO report) {
+        try {
+            jdbcTemplate.update("INSERT INTO forecast_backtest_report " +
+                            "(engine, source, material_count, history_days, train_days, horizon_days, step_days, " +
+                            "cutoff_count, mape, bias, load_millis, wall_millis, rows_per_second, memory_bytes) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    report.getEngine(), report.getSource(), report.getMaterialCount(), report.getHistoryDays(),
+                    report.getTrainDays(), report.getHorizonDays(), report.getStepDays(), report.getCutoffCount(),
+                    report.getMape(), report.getBias(), report.getLoadMillis(), report.getWallMillis(),
+                    report.getRowsPerSecond(), report.getMemoryBytes());
+        } catch (DataAccessException e) {
+            log.warn("保存回测报告失败: {}", e.getMessage());
+        }
+    }
+}
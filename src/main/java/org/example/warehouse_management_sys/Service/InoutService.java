@@ -10,6 +10,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import javax.annotation.Resource;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -29,6 +31,21 @@ public class InoutService {
     @Autowired
     private JdbcTemplate jdbcTemplate; // 添加JdbcTemp
 
+    @Resource
+    private AnomalyScoringService anomalyScoringService;
+
+    @Resource
+    private DB4AIService db4aiService;
+
+    @Resource
+    private MaterialStatsService materialStatsService;
+
+    @Resource
+    private StockAlertEvaluationService stockAlertEvaluationService;
+
+    @Resource
+    private ModelRetrainingService modelRetrainingService;
+
     private static final DateTimeFormatter FORMATTER =
             DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
 
@@ -73,6 +90,50 @@ public class InoutService {
         log.info("出入库操作成功: 单据号={}, 物料={}, 类型={}, 数量={}",
                 generatedRecordId, dto.getMaterialId(), dto.getInoutType(), dto.getQuantity());
 
+        // 出库统计缓存：事务内登记进行中的出库，提交后增量累加
+        if ("出库".equals(dto.getInoutType())) {
+            materialStatsService.recordOutbound(dto.getMaterialId(), dto.getQuantity());
+        }
+
+        // 库存变化后采购推荐需重新计算
+        db4aiService.invalidatePurchaseRecommendations();
+
+        // 事务提交后实时异常打分和库存预警评估。操作时间和变动后库存取存储过程写入的记录：
+        // 操作时间与增量检测排序一致；存储过程在行锁下计算的 after_stock 不受并发出入库影响
+        InoutRecord saved = inoutRecordMapper.selectById(generatedRecordId);
+        if (saved == null || saved.getAfterStock() == null) {
+            throw new IllegalStateException("出入库记录回读失败: " + generatedRecordId);
+        }
+        LocalDateTime operationTime = saved.getOperationTime() != null
+                ? saved.getOperationTime() : LocalDateTime.now();
+        BigDecimal afterStock = saved.getAfterStock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            // 出入库已提交，后续处理失败只记日志，不能让请求返回失败导致客户端重复提交
+            @Override
+            public void afterCommit() {
+                try {
+                    anomalyScoringService.onMovementCommitted(generatedRecordId, dto.getMaterialId(),
+                            dto.getInoutType(), dto.getQuantity(), operationTime);
+                } catch (Exception e) {
+                    log.error("提交后异常打分失败: 单据号={}", generatedRecordId, e);
+                }
+                if ("出库".equals(dto.getInoutType())) {
+                    // 出库计入物料需求模型的流式统计，内存累积后定时写库，不占用出库事务的行锁
+                    try {
+                        modelRetrainingService.recordOutbound(dto.getMaterialId(), dto.getQuantity());
+                    } catch (Exception e) {
+                        log.error("提交后累计出库统计失败: 单据号={}", generatedRecordId, e);
+                    }
+                }
+                try {
+                    stockAlertEvaluationService.onMovementCommitted(dto.getMaterialId(), afterStock,
+                            material.getSafeStockMin(), material.getSafeStockMax());
+                } catch (Exception e) {
+                    log.error("提交后库存预警评估失败: 单据号={}", generatedRecordId, e);
+                }
+            }
+        });
+
         return generatedRecordId;
     }
 
@@ -117,11 +178,11 @@ public class InoutService {
         try {
             StringBuilder sql = new StringBuilder(
                     "SELECT ir.*, m.MATERIAL_NAME, o.OPERATOR_NAME, " +
-                            "va.anomaly_reason, va.z_score, va.cluster " +
+                            "ia.anomaly_reason, ia.z_score, ia.cluster " +
                             "FROM INOUT_RECORD ir " +
                             "LEFT JOIN MATERIAL m ON ir.MATERIAL_ID = m.MATERIAL_ID " +
                             "LEFT JOIN OPERATOR o ON ir.OPERATOR_ID = o.OPERATOR_ID " +
-                            "LEFT JOIN V_ANOMALY_INOUT_LOOSE_4517 va ON ir.RECORD_ID = va.RECORD_ID " +
+                            "LEFT JOIN INOUT_ANOMALY ia ON ir.RECORD_ID = ia.RECORD_ID " +
                             "WHERE 1=1 "
             );
 
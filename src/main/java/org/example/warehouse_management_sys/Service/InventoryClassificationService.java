@@ -0,0 +1,182 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 库存 ABC/XYZ 分类服务
+ * ABC：按窗口内出库金额（出库量 × 单价）降序累计占比划分；
+ * XYZ：按日需求变异系数（标准差/均值，无出库日计为0）划分。
+ * 日出库量先按水位线增量汇总到 material_daily_outbound，分类只读汇总表。
+ */
+@Slf4j
+@Service
+public class InventoryClassificationService {
+
+    private static final String ROLLUP_JOB = "material_daily_outbound";
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.db4ai.classification.window-days:365}")
+    private int windowDays;
+
+    @Value("${app.db4ai.classification.a-share:0.8}")
+    private double aShare;
+
+    @Value("${app.db4ai.classification.b-share:0.95}")
+    private double bShare;
+
+    @Value("${app.db4ai.classification.x-cv:0.5}")
+    private double xCv;
+
+    @Value("${app.db4ai.classification.y-cv:1.0}")
+    private double yCv;
+
+    /**
+     * 增量汇总日出库量并重新分类
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<String, Object> refreshClassification() {
+        long start = System.currentTimeMillis();
+        int rolledUp = rollupDailyOutbound();
+
+        String sql = "SELECT m.material_id, COALESCE(m.unit_price, 0) AS unit_price, " +
+                "COALESCE(SUM(d.quantity), 0) AS total, " +
+                "COALESCE(SUM(d.quantity * d.quantity), 0) AS total_sq " +
+                "FROM material m " +
+                "LEFT JOIN material_daily_outbound d ON d.material_id = m.material_id " +
+                "AND d.stat_date >= CURRENT_DATE - CAST(? AS INTEGER) " +
+                "WHERE m.status = '正常' " +
+                "GROUP BY m.material_id, m.unit_price";
+        List<Classification> rows = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Classification row = new Classification();
+            row.materialId = rs.getString("material_id");
+            row.unitPrice = rs.getDouble("unit_price");
+            row.total = rs.getDouble("total");
+            row.totalSq = rs.getDouble("total_sq");
+            return row;
+        }, windowDays);
+
+        // 各物料金额与变异系数互不依赖，并行计算
+        rows.parallelStream().forEach(row -> {
+            row.value = row.total * row.unitPrice;
+            double mean = row.total / windowDays;
+            if (mean > 0) {
+                double std = Math.sqrt(Math.max(0, row.totalSq / windowDays - mean * mean));
+                row.cv = std / mean;
+                row.xyzClass = row.cv <= xCv ? "X" : row.cv <= yCv ? "Y" : "Z";
+            } else {
+                row.xyzClass = "Z";
+            }
+        });
+
+        // ABC 需全局排序累计
+        rows.sort(Comparator.comparingDouble((Classification row) -> row.value).reversed());
+        double totalValue = rows.stream().mapToDouble(row -> row.value).sum();
+        double cumulative = 0;
+        for (Classification row : rows) {
+            cumulative += row.value;
+            row.share = totalValue > 0 ? cumulative / totalValue : 1;
+            // 累计占比在阈值内，或本物料跨过阈值的，归入较高一档
+            double previousShare = totalValue > 0 ? (cumulative - row.value) / totalValue : 1;
+            row.abcClass = row.value <= 0 ? "C" : previousShare < aShare ? "A" : previousShare < bShare ? "B" : "C";
+        }
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate("INSERT INTO material_classification " +
+                        "(material_id, consumption_value, value_share, demand_cv, abc_class, xyz_class, classify_time) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                        "ON CONFLICT (material_id) DO UPDATE SET " +
+                        "consumption_value = EXCLUDED.consumption_value, value_share = EXCLUDED.value_share, " +
+                        "demand_cv = EXCLUDED.demand_cv, abc_class = EXCLUDED.abc_class, " +
+                        "xyz_class = EXCLUDED.xyz_class, classify_time = EXCLUDED.classify_time",
+                rows.stream().map(row -> new Object[]{row.materialId, row.value, row.share,
+                        row.cv, row.abcClass, row.xyzClass, now}).collect(Collectors.toList()));
+        // 已停用或删除的物料移除分类
+        jdbcTemplate.update("DELETE FROM material_classification WHERE classify_time < ?", now);
+
+        Map<String, Object> result = getSummary();
+        result.put("rolledUpDays", rolledUp);
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        log.info("ABC/XYZ分类完成: 物料={}, 汇总天数={}, 耗时={}ms",
+                rows.size(), rolledUp, result.get("elapsedMs"));
+        return result;
+    }
+
+    /**
+     * 分类矩阵统计（如 AX、BY 各有多少物料）
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getSummary() {
+        Map<String, Object> matrix = new TreeMap<>();
+        jdbcTemplate.query("SELECT abc_class, xyz_class, COUNT(*) AS cnt, SUM(consumption_value) AS value " +
+                "FROM material_classification GROUP BY abc_class, xyz_class", rs -> {
+            Map<String, Object> cell = new HashMap<>();
+            cell.put("count", rs.getLong("cnt"));
+            cell.put("value", rs.getBigDecimal("value"));
+            matrix.put(rs.getString("abc_class") + rs.getString("xyz_class"), cell);
+        });
+        Map<String, Object> result = new HashMap<>();
+        result.put("matrix", matrix);
+        result.put("classifyTime", jdbcTemplate.queryForObject(
+                "SELECT MAX(classify_time) FROM material_classification", Timestamp.class));
+        return result;
+    }
+
+    /**
+     * 从水位线日期汇总到昨天（只汇总完整日），并清理窗口外的汇总，返回汇总天数
+     */
+    private int rollupDailyOutbound() {
+        LocalDate today = LocalDate.now();
+        List<Timestamp> watermark = jdbcTemplate.queryForList(
+                "SELECT last_operation_time FROM job_watermark WHERE job_name = ? FOR UPDATE",
+                Timestamp.class, ROLLUP_JOB);
+        LocalDate from;
+        if (watermark.isEmpty()) {
+            from = today.minusDays(windowDays);
+            jdbcTemplate.update(
+                    "INSERT INTO job_watermark (job_name, last_operation_time) VALUES (?, ?)",
+                    ROLLUP_JOB, from.atStartOfDay());
+        } else {
+            from = watermark.get(0).toLocalDateTime().toLocalDate();
+        }
+        if (!from.isBefore(today)) {
+            return 0;
+        }
+
+        jdbcTemplate.update("INSERT INTO material_daily_outbound (material_id, stat_date, quantity) " +
+                        "SELECT material_id, CAST(operation_time AS DATE), SUM(quantity) " +
+                        "FROM inout_record " +
+                        "WHERE inout_type = '出库' AND operation_time >= ? AND operation_time < ? " +
+                        "GROUP BY material_id, CAST(operation_time AS DATE) " +
+                        "ON CONFLICT (material_id, stat_date) DO UPDATE SET quantity = EXCLUDED.quantity",
+                from.atStartOfDay(), today.atStartOfDay());
+        jdbcTemplate.update("DELETE FROM material_daily_outbound WHERE stat_date < ?",
+                today.minusDays(windowDays));
+        jdbcTemplate.update("UPDATE job_watermark SET last_operation_time = ?, update_time = CURRENT_TIMESTAMP " +
+                "WHERE job_name = ?", today.atStartOfDay(), ROLLUP_JOB);
+        return (int) (today.toEpochDay() - from.toEpochDay());
+    }
+
+    private static class Classification {
+        private String materialId;
+        private double unitPrice;
+        private double total;
+        private double totalSq;
+        private double value;
+        private double share;
+        private Double cv;
+        private String abcClass;
+        private String xyzClass;
+    }
+}
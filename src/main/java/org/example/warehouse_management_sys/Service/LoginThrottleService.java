@@ -0,0 +1,185 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 登录保护：
+ * 1. 按用户名和按来源IP的令牌桶限流，超限的尝试不进入数据库；
+ * 2. 不存在的用户名短期缓存，重复尝试直接拒绝。应用内没有新建操作员的入口，账号直接写库，
+ *    在缓存期内（unknown-user-ttl-ms）尝试过的新用户名最迟在缓存过期后才能登录；
+ * 3. 登录查询并发上限：信号量限制同时执行登录查询的线程数，连接仍取自共享连接池，
+ *    并非预留的专用连接，只保证登录风暴最多同时占用 max-concurrent-queries 个连接。
+ */
+@Slf4j
+@Service
+public class LoginThrottleService {
+
+    @Value("${app.auth.throttle.user-capacity:5}")
+    private int userCapacity;
+
+    @Value("${app.auth.throttle.user-refill-per-minute:5}")
+    private double userRefillPerMinute;
+
+    @Value("${app.auth.throttle.ip-capacity:20}")
+    private int ipCapacity;
+
+    @Value("${app.auth.throttle.ip-refill-per-minute:60}")
+    private double ipRefillPerMinute;
+
+    @Value("${app.auth.throttle.unknown-user-ttl-ms:300000}")
+    private long unknownUserTtlMs;
+
+    @Value("${app.auth.throttle.max-tracked-keys:10000}")
+    private int maxTrackedKeys;
+
+    @Value("${app.auth.max-concurrent-queries:3}")
+    private int maxConcurrentQueries;
+
+    @Value("${app.auth.query-wait-ms:500}")
+    private long queryWaitMs;
+
+    private final Map<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+
+    // key: 用户名(与登录查询一致，区分大小写), value: 过期时间
+    private final Map<String, Long> unknownUsers = new ConcurrentHashMap<>();
+
+    private Semaphore queryPermits;
+
+    @PostConstruct
+    public void init() {
+        queryPermits = new Semaphore(maxConcurrentQueries);
+    }
+
+    /**
+     * 登录尝试限流，用户名和来源IP各消耗一个令牌
+     */
+    public boolean tryAcquire(String username, String clientIp) {
+        boolean ipAllowed = bucket(ipBuckets, clientIp, ipCapacity, ipRefillPerMinute).tryConsume();
+        boolean userAllowed = bucket(userBuckets, normalize(username), userCapacity, userRefillPerMinute).tryConsume();
+        if (!ipAllowed || !userAllowed) {
+            log.warn("登录限流: username={}, ip={}", username, clientIp);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 用户名是否在不存在缓存中
+     */
+    public boolean isKnownUnknown(String username) {
+        if (username == null) {
+            return false;
+        }
+        Long expireAt = unknownUsers.get(username);
+        if (expireAt == null) {
+            return false;
+        }
+        if (expireAt < System.currentTimeMillis()) {
+            unknownUsers.remove(username);
+            return false;
+        }
+        return true;
+    }
+
+    public void markUnknown(String username) {
+        if (username == null) {
+            return;
+        }
+        if (unknownUsers.size() >= maxTrackedKeys) {
+            unknownUsers.clear();
+        }
+        unknownUsers.put(username, System.currentTimeMillis() + unknownUserTtlMs);
+    }
+
+    /**
+     * 在登录查询并发预算内执行，等待超时抛出 IllegalStateException
+     */
+    public <T> T withQueryPermit(Supplier<T> query) {
+        boolean acquired = false;
+        try {
+            acquired = queryPermits.tryAcquire(queryWaitMs, TimeUnit.MILLISECONDS);
+            if (!acquired) {
+                log.warn("登录查询并发已满({})，拒绝本次登录", maxConcurrentQueries);
+                throw new IllegalStateException("登录繁忙，请稍后再试");
+            }
+            return query.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("登录繁忙，请稍后再试");
+        } finally {
+            if (acquired) {
+                queryPermits.release();
+            }
+        }
+    }
+
+    /**
+     * 定期清理已回满的令牌桶和过期的不存在用户名，控制内存占用
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        userBuckets.values().removeIf(b -> b.isFull(now));
+        ipBuckets.values().removeIf(b -> b.isFull(now));
+        unknownUsers.values().removeIf(expireAt -> expireAt < now);
+    }
+
+    private TokenBucket bucket(Map<String, TokenBucket> buckets, String key, int capacity, double refillPerMinute) {
+        if (buckets.size() >= maxTrackedKeys && !buckets.containsKey(key)) {
+            evictIdle();
+        }
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(capacity, refillPerMinute / 60000.0));
+    }
+
+    private String normalize(String username) {
+        return username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 令牌桶：容量 capacity，每毫秒补充 refillPerMs 个令牌
+     */
+    private static class TokenBucket {
+        private final int capacity;
+        private final double refillPerMs;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, double refillPerMs) {
+            this.capacity = capacity;
+            this.refillPerMs = refillPerMs;
+            this.tokens = capacity;
+            this.lastRefill = System.currentTimeMillis();
+        }
+
+        synchronized boolean tryConsume() {
+            refill(System.currentTimeMillis());
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerMs);
+            lastRefill = now;
+        }
+    }
+}
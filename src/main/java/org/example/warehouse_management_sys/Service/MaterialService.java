@@ -20,6 +20,12 @@ public class MaterialService {
     @Resource
     private MaterialMapper materialMapper;
 
+    @Resource
+    private DB4AIService db4aiService;
+
+    @Resource
+    private SupplierDirectory supplierDirectory;
+
     /**
      * 新增物料
      */
@@ -52,6 +58,9 @@ public class MaterialService {
         BeanUtils.copyProperties(dto, material);
 
         int result = materialMapper.update(material);
+        if (result > 0) {
+            db4aiService.invalidatePurchaseRecommendations();
+        }
         log.info("更新物料: {}, 结果: {}", dto.getMaterialId(), result > 0);
         return result > 0;
     }
@@ -66,6 +75,9 @@ public class MaterialService {
         }
 
         int result = materialMapper.updateSafeStock(materialId, min, max);
+        if (result > 0) {
+            db4aiService.invalidatePurchaseRecommendations();
+        }
         log.info("更新安全库存: {}, min={}, max={}, 结果: {}",
                 materialId, min, max, result > 0);
         return result > 0;
@@ -80,6 +92,7 @@ public class MaterialService {
         if (result == 0) {
             throw new IllegalArgumentException("删除失败,可能库存不为0或物料不存在");
         }
+        db4aiService.invalidatePurchaseRecommendations();
         log.info("删除物料: {}", materialId);
         return true;
     }
@@ -88,14 +101,23 @@ public class MaterialService {
      * 根据ID查询物料
      */
     public Material getMaterialById(String materialId) {
-        return materialMapper.selectById(materialId);
+        return supplierDirectory.enrich(materialMapper.selectById(materialId));
     }
 
     /**
      * 查询所有物料
      */
     public List<Material> getAllMaterials() {
-        return materialMapper.selectAllWithStatus();
+        return getAllMaterials(null, null);
+    }
+
+    /**
+     * 按ABC/XYZ分类查询物料，参数为空表示不筛选
+     */
+    public List<Material> getAllMaterials(String abcClass, String xyzClass) {
+        return supplierDirectory.enrich(materialMapper.selectAllWithStatus(
+                abcClass == null ? null : abcClass.trim().toUpperCase(),
+                xyzClass == null ? null : xyzClass.trim().toUpperCase()));
     }
 
     /**
@@ -105,21 +127,23 @@ public class MaterialService {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getAllMaterials();
         }
-        return materialMapper.selectByKeyword(keyword.trim());
+        String trimmed = keyword.trim();
+        return supplierDirectory.enrich(
+                materialMapper.selectByKeyword(trimmed, supplierDirectory.findIdsByName(trimmed)));
     }
 
     /**
      * 查询低库存物料
      */
     public List<Material> getLowStockMaterials() {
-        return materialMapper.selectLowStock();
+        return supplierDirectory.enrich(materialMapper.selectLowStock());
     }
 
     /**
      * 查询高库存物料
      */
     public List<Material> getHighStockMaterials() {
-        return materialMapper.selectHighStock();
+        return supplierDirectory.enrich(materialMapper.selectHighStock());
     }
 
     /**
@@ -133,14 +157,14 @@ public class MaterialService {
      * 根据类别查询物料
      */
     public List<Material> getMaterialsByCategory(Integer categoryId) {
-        return materialMapper.selectByCategoryId(categoryId);
+        return supplierDirectory.enrich(materialMapper.selectByCategoryId(categoryId));
     }
 
     /**
      * 根据供应商查询物料
      */
     public List<Material> getMaterialsBySupplier(String supplierId) {
-        return materialMapper.selectBySupplierId(supplierId);
+        return supplierDirectory.enrich(materialMapper.selectBySupplierId(supplierId));
     }
 }
 
@@ -0,0 +1,176 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 物料出库统计缓存
+ * 按物料缓存出库记录的 COUNT/SUM/SUM(平方) 聚合，新出库提交后增量累加，
+ * 未命中的物料用一次分组查询补齐，均值与样本标准差由聚合值计算。
+ * 每个物料维护进行中出库数和版本号：加载期间该物料有出库进行中或已完成时不回写缓存，
+ * 避免查询已包含的出库再被增量累加一次，或查询之后提交的出库增量丢失。
+ */
+@Slf4j
+@Service
+public class MaterialStatsService {
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private ClusterModelRegistry clusterModelRegistry;
+
+    /**
+     * 缓存有效期，兜底覆盖绕过应用直接修改出入库记录的情况
+     */
+    @Value("${app.db4ai.material-stats.cache-ttl-ms:600000}")
+    private long cacheTtlMs;
+
+    private final Map<String, Aggregate> cache = new ConcurrentHashMap<>();
+
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    /**
+     * 批量获取物料出库统计及均值所属聚类
+     */
+    public Map<String, Map<String, Object>> getStats(Collection<String> materialIds) {
+        long now = System.currentTimeMillis();
+        Map<String, Aggregate> found = new LinkedHashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String materialId : new LinkedHashSet<>(materialIds)) {
+            Aggregate aggregate = cache.get(materialId);
+            if (aggregate != null && now - aggregate.loadTime < cacheTtlMs) {
+                found.put(materialId, aggregate);
+            } else {
+                misses.add(materialId);
+                found.put(materialId, null);
+            }
+        }
+        if (!misses.isEmpty()) {
+            Map<String, Long> versions = new HashMap<>();
+            for (String materialId : misses) {
+                versions.put(materialId, guard(materialId).version.get());
+            }
+            Map<String, Aggregate> loaded = load(misses);
+            loaded.forEach((materialId, aggregate) -> cache.compute(materialId, (id, current) -> {
+                Guard guard = guard(id);
+                return guard.inFlight.get() == 0 && guard.version.get() == versions.get(id) ? aggregate : current;
+            }));
+            found.putAll(loaded);
+        }
+
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        found.forEach((materialId, aggregate) -> result.put(materialId, toStats(aggregate)));
+        log.debug("物料统计: 请求={}, 未命中={}", found.size(), misses.size());
+        return result;
+    }
+
+    /**
+     * 出库事务内调用：标记该物料出库进行中，提交后增量更新已缓存的聚合，未缓存的物料等首次查询时加载。
+     * 不在事务中调用时直接累加
+     */
+    public void recordOutbound(String materialId, BigDecimal quantity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.computeIfPresent(materialId, (id, aggregate) -> aggregate.add(quantity.doubleValue()));
+            guard(materialId).version.incrementAndGet();
+            return;
+        }
+        Guard guard = guard(materialId);
+        guard.inFlight.incrementAndGet();
+        guard.version.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        cache.computeIfPresent(materialId, (id, aggregate) -> aggregate.add(quantity.doubleValue()));
+                    }
+                } finally {
+                    guard.inFlight.decrementAndGet();
+                    guard.version.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    private Guard guard(String materialId) {
+        return guards.computeIfAbsent(materialId, id -> new Guard());
+    }
+
+    private Map<String, Aggregate> load(List<String> materialIds) {
+        long loadTime = System.currentTimeMillis();
+        Map<String, Aggregate> loaded = new HashMap<>();
+        for (String materialId : materialIds) {
+            loaded.put(materialId, new Aggregate(0, 0, 0, loadTime));
+        }
+        String placeholders = String.join(",", Collections.nCopies(materialIds.size(), "?"));
+        String sql = "SELECT material_id, COUNT(*) AS cnt, " +
+                "SUM(quantity::double precision) AS total, " +
+                "SUM(quantity::double precision * quantity::double precision) AS total_sq " +
+                "FROM inout_record " +
+                "WHERE inout_type = '出库' AND material_id IN (" + placeholders + ") " +
+                "GROUP BY material_id";
+        jdbcTemplate.query(sql, rs -> {
+            loaded.put(rs.getString("material_id"), new Aggregate(
+                    rs.getLong("cnt"), rs.getDouble("total"), rs.getDouble("total_sq"), loadTime));
+        }, materialIds.toArray());
+        return loaded;
+    }
+
+    /**
+     * 字段与单物料接口保持一致：avg_quantity / std_quantity（样本标准差）/ record_count
+     */
+    private Map<String, Object> toStats(Aggregate aggregate) {
+        Map<String, Object> stats = new HashMap<>();
+        Double avg = aggregate.count > 0 ? aggregate.sum / aggregate.count : null;
+        Double std = aggregate.count > 1
+                ? Math.sqrt(Math.max(0, (aggregate.sumSq - aggregate.sum * aggregate.sum / aggregate.count)
+                / (aggregate.count - 1)))
+                : null;
+        stats.put("avg_quantity", avg);
+        stats.put("std_quantity", std);
+        stats.put("record_count", aggregate.count);
+        stats.put("cluster", avg == null ? null : clusterModelRegistry.predict(avg));
+        return stats;
+    }
+
+    /**
+     * 物料的进行中出库数和版本号，出库开始和结束时各递增一次版本
+     */
+    private static class Guard {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong version = new AtomicLong();
+    }
+
+    /**
+     * 不可变聚合值，增量更新时整体替换
+     */
+    private static class Aggregate {
+        private final long count;
+        private final double sum;
+        private final double sumSq;
+        private final long loadTime;
+
+        private Aggregate(long count, double sum, double sumSq, long loadTime) {
+            this.count = count;
+            this.sum = sum;
+            this.sumSq = sumSq;
+            this.loadTime = loadTime;
+        }
+
+        private Aggregate add(double value) {
+            return new Aggregate(count + 1, sum + value, sumSq + value * value, loadTime);
+        }
+    }
+}
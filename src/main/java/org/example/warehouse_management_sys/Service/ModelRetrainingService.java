@@ -0,0 +1,371 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.Service.ForecastBacktestService.Engine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 模型漂移检测与增量重训服务
+ * 出库提交后按物料增量累加训练以来的日出库和、平方和（流式统计，内存累积后定时写入 material_forecast_model），
+ * 维护时直接用这些统计与训练基线比较：
+ * 预测误差（实际日均与预测日均的相对偏差）和输入分布漂移（均值Z检验、标准差比例），
+ * 只对漂移且距上次训练满 retrain-days 的物料重训，单次最多 max-models 个，分批并行执行。
+ * 物料模型的 daily_rate 供采购计划和断货模拟使用；重训物料占比较高时同时刷新出库聚类模型。
+ */
+@Slf4j
+@Service
+public class ModelRetrainingService {
+
+    /**
+     * 标准差比例超出 [1/STD_RATIO_LIMIT, STD_RATIO_LIMIT] 视为分布漂移
+     */
+    private static final double STD_RATIO_LIMIT = 2.0;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private ForecastBacktestService forecastBacktestService;
+
+    @Resource
+    private ClusterModelRegistry clusterModelRegistry;
+
+    @Resource
+    private PurchasePlanService purchasePlanService;
+
+    @Resource(name = "retrainExecutor")
+    private ThreadPoolTaskExecutor retrainExecutor;
+
+    @Value("${app.db4ai.training.max-models:50}")
+    private int maxModels;
+
+    @Value("${app.db4ai.training.retrain-days:7}")
+    private int retrainDays;
+
+    @Value("${app.db4ai.training.history-days:90}")
+    private int historyDays;
+
+    @Value("${app.db4ai.training.error-threshold:0.3}")
+    private double errorThreshold;
+
+    @Value("${app.db4ai.training.drift-threshold:3.0}")
+    private double driftThreshold;
+
+    @Value("${app.db4ai.training.batch-size:25}")
+    private int batchSize;
+
+    @Value("${app.db4ai.training.cluster-refresh-ratio:0.2}")
+    private double clusterRefreshRatio;
+
+    @Value("${app.db4ai.backtest.engine:MOVING_AVERAGE}")
+    private String engineName;
+
+    // 同一时间只允许一次维护：维护线程会等待本线程池中的分批任务，并发多次会占满线程池
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile Map<String, Object> lastResult;
+
+    // 待写库的出库量，键为 (物料, 出库日期)
+    private final ConcurrentHashMap<OutboundKey, BigDecimal> pendingOutbound = new ConcurrentHashMap<>();
+
+    /**
+     * 出库提交后调用：在内存中按 (物料, 日期) 累加出库量，由 flush 定时批量写库，不进入出库事务
+     */
+    public void recordOutbound(String materialId, BigDecimal quantity) {
+        pendingOutbound.merge(new OutboundKey(materialId, LocalDate.now()), quantity, BigDecimal::add);
+    }
+
+    /**
+     * 批量写入累积的流式日出库统计，按日期顺序执行，保证 current_day 只向后推进。
+     * 同一物料同一天的累积量 Q 一次写入：日出库平方和增量 (t+Q)^2 - t^2 = 2tQ + Q^2。
+     * 写入失败的增量放回队列，下次重试
+     */
+    @Scheduled(fixedDelayString = "${app.db4ai.training.flush-interval-ms:5000}")
+    public void flushOutbound() {
+        if (pendingOutbound.isEmpty()) {
+            return;
+        }
+        List<OutboundKey> keys = new ArrayList<>(pendingOutbound.keySet());
+        keys.sort(Comparator.comparing(key -> key.day));
+        Map<OutboundKey, BigDecimal> drained = new LinkedHashMap<>();
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (OutboundKey key : keys) {
+            BigDecimal q = pendingOutbound.remove(key);
+            if (q == null) {
+                continue;
+            }
+            drained.put(key, q);
+            LocalDate day = key.day;
+            rows.add(new Object[]{q, day, q, q, q, q, q, day, q, q, day, key.materialId});
+        }
+        try {
+            jdbcTemplate.batchUpdate("UPDATE material_forecast_model SET " +
+                    "observed_total = observed_total + ?, " +
+                    "observed_total_sq = observed_total_sq + CASE WHEN current_day = ? " +
+                    "THEN 2 * current_day_qty * ? + ? * ? ELSE ? * ? END, " +
+                    "current_day_qty = CASE WHEN current_day = ? THEN current_day_qty + ? ELSE ? END, " +
+                    "current_day = ? " +
+                    "WHERE material_id = ?", rows);
+        } catch (Exception e) {
+            drained.forEach((key, q) -> pendingOutbound.merge(key, q, BigDecimal::add));
+            log.error("写入出库流式统计失败，{} 条增量待重试", drained.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushOutbound();
+    }
+
+    /**
+     * 在重训线程池中异步执行一次维护，已有维护在进行时返回 false
+     */
+    public boolean submitMaintenance() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        retrainExecutor.execute(() -> {
+            try {
+                runExclusive();
+            } catch (Exception e) {
+                log.error("模型维护失败", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Map<String, Object> getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * 检测漂移并重训受影响的物料模型（同步执行），已有维护在进行时跳过
+     */
+    public Map<String, Object> retrainDrifted() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("模型维护正在进行，跳过本次触发");
+            return Collections.singletonMap("skipped", true);
+        }
+        try {
+            return runExclusive();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> runExclusive() {
+        long start = System.currentTimeMillis();
+        List<DriftCheck> checks = detectDrift();
+        List<DriftCheck> drifted = checks.stream()
+                .filter(check -> check.reason != null)
+                .sorted(Comparator.comparingDouble((DriftCheck check) -> check.score).reversed())
+                .collect(Collectors.toList());
+        List<DriftCheck> selected = drifted.subList(0, Math.min(maxModels, drifted.size()));
+
+        Engine engine = forecastBacktestService.resolveEngine(engineName);
+        List<CompletableFuture<Integer>> batches = new ArrayList<>();
+        for (int from = 0; from < selected.size(); from += batchSize) {
+            List<DriftCheck> batch = selected.subList(from, Math.min(from + batchSize, selected.size()));
+            batches.add(CompletableFuture.supplyAsync(() -> retrainBatch(batch, engine), retrainExecutor));
+        }
+        int retrained = batches.stream().mapToInt(CompletableFuture::join).sum();
+
+        boolean clusterRefreshed = false;
+        if (!checks.isEmpty() && (double) retrained / checks.size() >= clusterRefreshRatio) {
+            clusterModelRegistry.refresh();
+            clusterRefreshed = true;
+        }
+        if (retrained > 0) {
+            // 采购计划按物料模型日均需求计算 EOQ，模型更新后重新生成
+            purchasePlanService.invalidate();
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("checked", checks.size());
+        result.put("drifted", drifted.size());
+        result.put("retrained", retrained);
+        result.put("deferred", drifted.size() - selected.size());
+        result.put("clusterRefreshed", clusterRefreshed);
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        result.put("finishTime", LocalDateTime.now());
+        lastResult = result;
+        log.info("模型漂移检测完成: 检查={}, 漂移={}, 重训={}, 延后={}, 刷新聚类={}, 耗时={}ms",
+                checks.size(), drifted.size(), retrained, drifted.size() - selected.size(),
+                clusterRefreshed, result.get("elapsedMs"));
+        return result;
+    }
+
+    /**
+     * 读取各物料模型基线和训练以来的流式出库统计，逐物料判断漂移；
+     * 只有尚无模型的物料需要按索引探测是否已有出库记录
+     */
+    private List<DriftCheck> detectDrift() {
+        String sql = "SELECT m.material_id, fm.daily_rate, fm.baseline_mean, fm.baseline_std, fm.train_time, " +
+                "fm.observed_total AS total, fm.observed_total_sq AS total_sq, " +
+                "CASE WHEN fm.material_id IS NULL THEN EXISTS (" +
+                "SELECT 1 FROM inout_record ir WHERE ir.material_id = m.material_id AND ir.inout_type = '出库' " +
+                "AND ir.operation_time >= CURRENT_DATE - CAST(? AS INTEGER) * INTERVAL '1 day') " +
+                "ELSE FALSE END AS has_history " +
+                "FROM material m " +
+                "LEFT JOIN material_forecast_model fm ON fm.material_id = m.material_id " +
+                "WHERE m.status = '正常'";
+
+        LocalDate today = LocalDate.now();
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            DriftCheck check = new DriftCheck();
+            check.materialId = rs.getString("material_id");
+            Timestamp trainTime = rs.getTimestamp("train_time");
+            if (trainTime == null) {
+                // 未训练过的物料有出库数据即训练
+                if (rs.getBoolean("has_history")) {
+                    check.reason = "无模型";
+                    check.score = 1;
+                }
+                return check;
+            }
+
+            // 流式统计从训练当天开始累计（含今天）
+            long observedDays = ChronoUnit.DAYS.between(trainTime.toLocalDateTime().toLocalDate(), today) + 1;
+            if (observedDays <= retrainDays) {
+                return check;
+            }
+
+            double rate = rs.getDouble("daily_rate");
+            double baselineMean = rs.getDouble("baseline_mean");
+            double baselineStd = rs.getDouble("baseline_std");
+            double mean = rs.getDouble("total") / observedDays;
+            double std = Math.sqrt(Math.max(0, rs.getDouble("total_sq") / observedDays - mean * mean));
+
+            // 预测误差
+            double error = rate > 0 ? Math.abs(mean - rate) / rate : (mean > 0 ? Double.MAX_VALUE : 0);
+            // 均值漂移（Z检验）与波动漂移
+            double z = baselineStd > 0
+                    ? Math.abs(mean - baselineMean) / (baselineStd / Math.sqrt(observedDays))
+                    : (Math.abs(mean - baselineMean) > 0 ? Double.MAX_VALUE : 0);
+            double stdRatio = baselineStd > 0 && std > 0
+                    ? Math.max(std / baselineStd, baselineStd / std)
+                    : (baselineStd == std ? 1 : Double.MAX_VALUE);
+
+            double errorScore = error / errorThreshold;
+            double driftScore = z / driftThreshold;
+            double stdScore = stdRatio / STD_RATIO_LIMIT;
+            check.score = Math.max(errorScore, Math.max(driftScore, stdScore));
+            if (errorScore >= 1) {
+                check.reason = String.format("预测误差 %.0f%%", Math.min(error, 99.99) * 100);
+            } else if (driftScore >= 1) {
+                check.reason = String.format("均值漂移 Z=%.2f", Math.min(z, 9999.99));
+            } else if (stdScore >= 1) {
+                check.reason = String.format("波动漂移 %.2f倍", Math.min(stdRatio, 9999.99));
+            }
+            return check;
+        }, historyDays);
+    }
+
+    /**
+     * 重训一批物料：一次查询取回训练窗口日出库量，计算后批量写回模型表
+     */
+    private int retrainBatch(List<DriftCheck> batch, Engine engine) {
+        List<String> materialIds = batch.stream().map(check -> check.materialId).collect(Collectors.toList());
+        String placeholders = String.join(",", Collections.nCopies(materialIds.size(), "?"));
+        String sql = "SELECT material_id, CAST(operation_time AS DATE) AS op_date, SUM(quantity) AS qty " +
+                "FROM inout_record " +
+                "WHERE inout_type = '出库' " +
+                "AND material_id IN (" + placeholders + ") " +
+                "AND operation_time >= CURRENT_DATE - CAST(? AS INTEGER) * INTERVAL '1 day' " +
+                "AND operation_time < CURRENT_DATE " +
+                "GROUP BY material_id, CAST(operation_time AS DATE)";
+        List<Object> params = new ArrayList<>(materialIds);
+        params.add(historyDays);
+
+        LocalDate firstDay = LocalDate.now().minusDays(historyDays);
+        Map<String, double[]> series = new HashMap<>();
+        materialIds.forEach(id -> series.put(id, new double[historyDays]));
+        jdbcTemplate.query(sql, rs -> {
+            int index = (int) ChronoUnit.DAYS.between(firstDay, rs.getDate("op_date").toLocalDate());
+            if (index >= 0 && index < historyDays) {
+                series.get(rs.getString("material_id"))[index] += rs.getDouble("qty");
+            }
+        }, params.toArray());
+
+        List<Object[]> rows = new ArrayList<>();
+        for (DriftCheck check : batch) {
+            double[] daily = series.get(check.materialId);
+            double sum = 0;
+            double sumSq = 0;
+            for (double value : daily) {
+                sum += value;
+                sumSq += value * value;
+            }
+            double mean = sum / daily.length;
+            double std = Math.sqrt(Math.max(0, sumSq / daily.length - mean * mean));
+            double rate = forecastBacktestService.forecastDailyRate(engine, daily, 0, daily.length);
+            rows.add(new Object[]{check.materialId, engine.name(), rate, mean, std, daily.length, check.reason});
+        }
+
+        // 重训后流式统计清零，从新的训练时间重新累计
+        jdbcTemplate.batchUpdate("INSERT INTO material_forecast_model " +
+                "(material_id, engine, daily_rate, baseline_mean, baseline_std, sample_days, retrain_reason) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT (material_id) DO UPDATE SET " +
+                "engine = EXCLUDED.engine, daily_rate = EXCLUDED.daily_rate, " +
+                "baseline_mean = EXCLUDED.baseline_mean, baseline_std = EXCLUDED.baseline_std, " +
+                "sample_days = EXCLUDED.sample_days, retrain_reason = EXCLUDED.retrain_reason, " +
+                "version = material_forecast_model.version + 1, train_time = CURRENT_TIMESTAMP, " +
+                "observed_total = 0, observed_total_sq = 0, current_day = NULL, current_day_qty = 0", rows);
+        log.info("重训物料模型 {} 个: {}", rows.size(), materialIds);
+        return rows.size();
+    }
+
+    private static class DriftCheck {
+        private String materialId;
+        private String reason; // 为空表示无需重训
+        private double score;
+    }
+
+    private static class OutboundKey {
+        private final String materialId;
+        private final LocalDate day;
+
+        private OutboundKey(String materialId, LocalDate day) {
+            this.materialId = materialId;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof OutboundKey)) {
+                return false;
+            }
+            OutboundKey other = (OutboundKey) o;
+            return materialId.equals(other.materialId) && day.equals(other.day);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(materialId, day);
+        }
+    }
+}
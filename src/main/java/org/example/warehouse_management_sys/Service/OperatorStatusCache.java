@@ -0,0 +1,105 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.Entity.Operator;
+import org.example.warehouse_management_sys.Mapper.OperatorMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 操作员状态缓存：令牌校验时按操作员取状态和状态版本，
+ * 每个操作员在有效期内最多查一次库，停用或改密在有效期内生效。
+ */
+@Slf4j
+@Service
+public class OperatorStatusCache {
+
+    public static final String STATUS_ACTIVE = "在职";
+
+    @Resource
+    private OperatorMapper operatorMapper;
+
+    @Value("${app.auth.status-cache-ttl-ms:30000}")
+    private long cacheTtlMs;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 操作员在职且状态版本与令牌一致时有效
+     */
+    public boolean isActive(String operatorId, int statusVersion) {
+        Entry entry = get(operatorId);
+        return entry.exists && STATUS_ACTIVE.equals(entry.status) && entry.statusVersion == statusVersion;
+    }
+
+    /**
+     * 当前状态版本，操作员不存在时返回 -1
+     */
+    public int currentVersion(String operatorId) {
+        Entry entry = get(operatorId);
+        return entry.exists ? entry.statusVersion : -1;
+    }
+
+    /**
+     * 本节点修改了操作员状态后失效，其他节点等待缓存过期。
+     * 在事务中调用时提交后再失效一次，避免提交前并发请求读到旧状态版本又写回缓存
+     */
+    public void evict(String operatorId) {
+        remove(operatorId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(operatorId);
+                }
+            });
+        }
+    }
+
+    private void remove(String operatorId) {
+        version.incrementAndGet();
+        cache.remove(operatorId);
+    }
+
+    private Entry get(String operatorId) {
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(operatorId);
+        if (entry != null && now - entry.loadTime < cacheTtlMs) {
+            return entry;
+        }
+        long loadVersion = version.get();
+        Operator operator = operatorMapper.selectById(operatorId);
+        entry = operator == null
+                ? new Entry(false, null, -1, now)
+                : new Entry(true, operator.getStatus(),
+                operator.getStatusVersion() == null ? 0 : operator.getStatusVersion(), now);
+        // 加载期间发生过失效则不写回，避免缓存旧状态版本
+        if (version.get() == loadVersion) {
+            cache.put(operatorId, entry);
+        }
+        return entry;
+    }
+
+    private static class Entry {
+        final boolean exists;
+        final String status;
+        final int statusVersion;
+        final long loadTime;
+
+        Entry(boolean exists, String status, int statusVersion, long loadTime) {
+            this.exists = exists;
+            this.status = status;
+            this.statusVersion = statusVersion;
+            this.loadTime = loadTime;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.Entity.PredictionJob;
+import org.example.warehouse_management_sys.Mapper.PredictionJobMapper;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步库存预测任务：在专用线程池中执行预测，支持进度查询、取消和任务历史。
+ * 同一时间只保留一个进行中的任务，重复触发会合并到该任务。
+ */
+@Slf4j
+@Service
+public class PredictionJobService {
+
+    public static final String STATUS_QUEUED = "排队中";
+    public static final String STATUS_RUNNING = "运行中";
+    public static final String STATUS_SUCCESS = "已完成";
+    public static final String STATUS_FAILED = "失败";
+    public static final String STATUS_CANCELLED = "已取消";
+
+    private static final DateTimeFormatter JOB_ID_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+    @Resource
+    private DB4AIService db4aiService;
+
+    @Resource
+    private PredictionJobMapper predictionJobMapper;
+
+    @Resource(name = "predictionExecutor")
+    private ThreadPoolTaskExecutor predictionExecutor;
+
+    // 当前进行中的任务（排队中或运行中）
+    private PredictionJob activeJob;
+    private AtomicBoolean activeCancelFlag;
+    private CompletableFuture<PredictionJob> activeCompletion;
+
+    /**
+     * 提交预测任务，已有进行中的任务时直接返回该任务
+     */
+    public synchronized PredictionJob submit(String triggerSource) {
+        if (activeJob != null) {
+            log.info("预测任务 {} 正在进行，合并来自[{}]的触发", activeJob.getJobId(), triggerSource);
+            return activeJob;
+        }
+
+        PredictionJob job = new PredictionJob();
+        job.setJobId("PJ" + LocalDateTime.now().format(JOB_ID_FORMATTER));
+        job.setTriggerSource(triggerSource);
+        job.setStatus(STATUS_QUEUED);
+        job.setProgress(0);
+        job.setStage("等待执行");
+        job.setCancellable(true);
+        job.setSubmitTime(LocalDateTime.now());
+        predictionJobMapper.insert(job);
+
+        AtomicBoolean cancelFlag = new AtomicBoolean(false);
+        CompletableFuture<PredictionJob> completion = new CompletableFuture<>();
+        try {
+            predictionExecutor.execute(() -> run(job, cancelFlag, completion));
+        } catch (TaskRejectedException e) {
+            job.setStatus(STATUS_FAILED);
+            job.setMessage("预测线程池已满，请稍后重试");
+            job.setEndTime(LocalDateTime.now());
+            predictionJobMapper.update(job);
+            throw new IllegalStateException("预测线程池已满，请稍后重试");
+        }
+
+        activeJob = job;
+        activeCancelFlag = cancelFlag;
+        activeCompletion = completion;
+        log.info("提交预测任务: jobId={}, 来源={}", job.getJobId(), triggerSource);
+        return job;
+    }
+
+    /**
+     * 请求取消任务，在下一个阶段或物料分片边界生效；存储过程执行阶段不可中断，取消在其结束后生效
+     */
+    public synchronized boolean cancel(String jobId) {
+        if (activeJob == null || !activeJob.getJobId().equals(jobId)) {
+            return false;
+        }
+        activeCancelFlag.set(true);
+        log.info("请求取消预测任务: {}", jobId);
+        return true;
+    }
+
+    /**
+     * 查询任务状态，进行中的任务返回实时进度
+     */
+    public synchronized PredictionJob getJob(String jobId) {
+        if (activeJob != null && activeJob.getJobId().equals(jobId)) {
+            return activeJob;
+        }
+        return predictionJobMapper.selectById(jobId);
+    }
+
+    /**
+     * 查询任务历史
+     */
+    public List<PredictionJob> getJobHistory(Integer limit) {
+        if (limit == null || limit <= 0) {
+            limit = 20;
+        }
+        List<PredictionJob> jobs = predictionJobMapper.selectRecent(limit);
+        synchronized (this) {
+            if (activeJob != null) {
+                jobs.replaceAll(job -> job.getJobId().equals(activeJob.getJobId()) ? activeJob : job);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * 获取任务完成通知
+     */
+    public synchronized CompletableFuture<PredictionJob> getCompletion(String jobId) {
+        if (activeJob != null && activeJob.getJobId().equals(jobId)) {
+            return activeCompletion;
+        }
+        return CompletableFuture.completedFuture(predictionJobMapper.selectById(jobId));
+    }
+
+    /**
+     * 新批次发布后清理旧批次预警，失败不影响任务结果
+     */
+    private void retireStaleAlerts() {
+        try {
+            db4aiService.retireStaleAlertBatches();
+        } catch (Exception e) {
+            log.warn("清理旧批次预警失败，将在下次预测后重试", e);
+        }
+    }
+
+    private void run(PredictionJob job, AtomicBoolean cancelFlag, CompletableFuture<PredictionJob> completion) {
+        try {
+            if (cancelFlag.get()) {
+                job.setStatus(STATUS_CANCELLED);
+                job.setMessage("任务在执行前已取消");
+                return;
+            }
+            job.setStatus(STATUS_RUNNING);
+            job.setStartTime(LocalDateTime.now());
+            predictionJobMapper.update(job);
+            log.info("开始执行预测任务: {}", job.getJobId());
+
+            Map<String, Object> result = db4aiService.generateStockPredictions(
+                    (progress, stage) -> {
+                        job.setProgress(progress);
+                        job.setStage(stage);
+                        job.setCancellable(!DB4AIService.STAGE_RUN_PROCEDURE.equals(stage));
+                    },
+                    cancelFlag::get);
+
+            int code = Integer.parseInt(result.get("code").toString());
+            job.setMessage((String) result.get("message"));
+            job.setBatchId((String) result.get("batchId"));
+            job.setPredictionCount((Integer) result.get("predictionCount"));
+            if (code == 200) {
+                job.setStatus(STATUS_SUCCESS);
+                job.setProgress(100);
+                job.setStage("完成");
+                retireStaleAlerts();
+            } else if (code == 499) {
+                job.setStatus(STATUS_CANCELLED);
+            } else {
+                job.setStatus(STATUS_FAILED);
+            }
+        } catch (Exception e) {
+            log.error("预测任务 {} 执行失败", job.getJobId(), e);
+            job.setStatus(STATUS_FAILED);
+            job.setMessage("预测任务失败: " + e.getMessage());
+        } finally {
+            job.setEndTime(LocalDateTime.now());
+            job.setCancellable(false);
+            try {
+                predictionJobMapper.update(job);
+            } catch (Exception e) {
+                log.error("保存预测任务 {} 状态失败", job.getJobId(), e);
+            }
+            synchronized (this) {
+                if (activeJob == job) {
+                    activeJob = null;
+                    activeCancelFlag = null;
+                    activeCompletion = null;
+                }
+            }
+            log.info("预测任务结束: jobId={}, 状态={}, 消息={}", job.getJobId(), job.getStatus(), job.getMessage());
+            completion.complete(job);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.DTO.PurchasePlanDTO;
+import org.example.warehouse_management_sys.DTO.PurchasePlanDTO.PlanLine;
+import org.example.warehouse_management_sys.DTO.PurchasePlanDTO.SupplierOrder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 采购计划服务
+ * 基于已发布的预测批次，按 EOQ（经济订货批量）和安全库存目标计算各物料采购数量，
+ * 再按供应商分组生成采购草稿单。计划按预测批次缓存，直到下一批次发布或物料需求模型重训。
+ */
+@Slf4j
+@Service
+public class PurchasePlanService {
+
+    private static final String NO_SUPPLIER = "未指定供应商";
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private SupplierDirectory supplierDirectory;
+
+    /**
+     * 单次订货成本（元）
+     */
+    @Value("${app.purchase.order-cost:200}")
+    private double orderCost;
+
+    /**
+     * 年持有成本率（占单价比例）
+     */
+    @Value("${app.purchase.holding-rate:0.2}")
+    private double holdingRate;
+
+    /**
+     * 需求统计窗口（天），按比例折算为年需求
+     */
+    @Value("${app.purchase.demand-days:365}")
+    private int demandDays;
+
+    private volatile PurchasePlanDTO cachedPlan;
+
+    // 失效时递增，生成期间发生失效的计划不回写缓存
+    private final AtomicLong planVersion = new AtomicLong();
+
+    /**
+     * 获取采购计划，命中缓存时不查库；缓存由批次发布和模型重训失效
+     */
+    public PurchasePlanDTO getPurchasePlan(boolean refresh) {
+        PurchasePlanDTO plan = cachedPlan;
+        if (!refresh && plan != null) {
+            return plan;
+        }
+        synchronized (this) {
+            plan = cachedPlan;
+            if (refresh || plan == null) {
+                long version = planVersion.get();
+                plan = buildPlan(currentBatchId());
+                if (planVersion.get() == version) {
+                    cachedPlan = plan;
+                }
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * 新预测批次发布或物料需求模型重训后清除缓存，下次请求重新生成。
+     * 在事务中调用时于事务结束后再清除一次，避免并发请求按提交前的旧批次回写缓存
+     */
+    public void invalidate() {
+        clearPlan();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clearPlan();
+                }
+            });
+        }
+    }
+
+    private void clearPlan() {
+        planVersion.incrementAndGet();
+        cachedPlan = null;
+    }
+
+    private String currentBatchId() {
+        List<String> batchIds = jdbcTemplate.queryForList(
+                "SELECT batch_id FROM stock_alert_publish WHERE alert_type = '低库存'", String.class);
+        return batchIds.isEmpty() ? null : batchIds.get(0);
+    }
+
+    private PurchasePlanDTO buildPlan(String batchId) {
+        long start = System.currentTimeMillis();
+
+        // 预测缺口、物料参数、物料需求模型和出库需求一次取回，供应商名称取自供应商目录
+        String sql = "SELECT m.material_id, m.material_name, m.unit, m.current_stock, " +
+                "m.safe_stock_min, m.safe_stock_max, m.unit_price, m.supplier_id, " +
+                "sa.current_stock AS predicted_stock, COALESCE(d.demand, 0) AS demand, " +
+                "fm.daily_rate AS model_daily_rate " +
+                "FROM stock_alert sa " +
+                "JOIN stock_alert_publish p ON p.alert_type = sa.alert_type AND p.batch_id = sa.batch_id " +
+                "JOIN material m ON sa.material_id = m.material_id " +
+                "LEFT JOIN material_forecast_model fm ON fm.material_id = m.material_id " +
+                "LEFT JOIN (" +
+                "SELECT material_id, SUM(quantity) AS demand FROM inout_record " +
+                "WHERE inout_type = '出库' " +
+                "AND operation_time >= CURRENT_DATE - CAST(? AS INTEGER) * INTERVAL '1 day' " +
+                "GROUP BY material_id) d ON d.material_id = m.material_id " +
+                "WHERE sa.alert_type = '低库存' AND sa.status = '未处理'";
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, demandDays);
+
+        // 各物料计算互不依赖，并行计算
+        List<PlanLine> lines = rows.parallelStream()
+                .map(this::buildLine)
+                .filter(line -> line.getOrderQuantity().signum() > 0)
+                .collect(Collectors.toList());
+
+        Map<String, List<PlanLine>> bySupplier = lines.stream()
+                .collect(Collectors.groupingBy(line -> Objects.toString(line.getSupplierId(), "")));
+
+        List<SupplierOrder> orders = new ArrayList<>();
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (Map.Entry<String, List<PlanLine>> entry : bySupplier.entrySet()) {
+            SupplierOrder order = new SupplierOrder();
+            List<PlanLine> orderLines = new ArrayList<>(entry.getValue());
+            order.setSupplierId(orderLines.get(0).getSupplierId());
+            order.setSupplierName(orderLines.get(0).getSupplierName());
+            orderLines.sort(Comparator.comparing(PlanLine::getShortfall).reversed());
+            order.setLines(orderLines);
+            BigDecimal amount = orderLines.stream()
+                    .map(PlanLine::getAmount)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            order.setTotalAmount(amount);
+            totalAmount = totalAmount.add(amount);
+            orders.add(order);
+        }
+        orders.sort(Comparator.comparing(SupplierOrder::getTotalAmount).reversed());
+
+        PurchasePlanDTO plan = new PurchasePlanDTO();
+        plan.setBatchId(batchId);
+        plan.setGenerateTime(LocalDateTime.now());
+        plan.setLineCount(lines.size());
+        plan.setTotalAmount(totalAmount);
+        plan.setOrders(orders);
+
+        log.info("生成采购计划: 批次={}, 物料={}, 供应商={}, 金额={}, 耗时={}ms",
+                batchId, lines.size(), orders.size(), totalAmount, System.currentTimeMillis() - start);
+        return plan;
+    }
+
+    /**
+     * 计算单个物料的采购数量：
+     * 缺口 = 目标库存(safe_stock_max，未设置时取 safe_stock_min) - 预测库存；
+     * 年需求取物料需求模型的预测日均 × 365，尚无模型时按统计窗口内出库量折算；
+     * EOQ = sqrt(2 × 年需求 × 订货成本 / (单价 × 持有成本率))；
+     * 采购数量按 EOQ 整批向上取整覆盖缺口，缺少单价或需求时按缺口采购。
+     */
+    private PlanLine buildLine(Map<String, Object> row) {
+        BigDecimal currentStock = toDecimal(row.get("current_stock"));
+        BigDecimal predictedStock = toDecimal(row.get("predicted_stock"));
+        BigDecimal safeStockMin = toDecimal(row.get("safe_stock_min"));
+        BigDecimal safeStockMax = toDecimal(row.get("safe_stock_max"));
+        BigDecimal unitPrice = toDecimal(row.get("unit_price"));
+
+        BigDecimal targetStock = safeStockMax.compareTo(safeStockMin) > 0 ? safeStockMax : safeStockMin;
+        BigDecimal shortfall = targetStock.subtract(predictedStock).max(BigDecimal.ZERO);
+
+        double annualDemand = row.get("model_daily_rate") != null
+                ? toDecimal(row.get("model_daily_rate")).doubleValue() * 365.0
+                : toDecimal(row.get("demand")).doubleValue() * 365.0 / demandDays;
+        double holdingCost = unitPrice.doubleValue() * holdingRate;
+        double eoq = annualDemand > 0 && holdingCost > 0
+                ? Math.sqrt(2 * annualDemand * orderCost / holdingCost)
+                : 0;
+
+        double quantity = shortfall.doubleValue();
+        if (eoq > 0 && quantity > 0) {
+            quantity = Math.ceil(quantity / eoq) * eoq;
+        }
+        BigDecimal orderQuantity = BigDecimal.valueOf(quantity).setScale(0, RoundingMode.CEILING);
+
+        PlanLine line = new PlanLine();
+        line.setMaterialId((String) row.get("material_id"));
+        line.setMaterialName((String) row.get("material_name"));
+        line.setUnit((String) row.get("unit"));
+        line.setSupplierId((String) row.get("supplier_id"));
+        line.setSupplierName(row.get("supplier_id") == null ? NO_SUPPLIER
+                : supplierDirectory.getName((String) row.get("supplier_id")));
+        line.setCurrentStock(currentStock);
+        line.setPredictedStock(predictedStock);
+        line.setSafeStockMin(safeStockMin);
+        line.setSafeStockMax(safeStockMax);
+        line.setTargetStock(targetStock);
+        line.setShortfall(shortfall);
+        line.setAnnualDemand(BigDecimal.valueOf(annualDemand).setScale(2, RoundingMode.HALF_UP));
+        line.setEoq(BigDecimal.valueOf(eoq).setScale(2, RoundingMode.HALF_UP));
+        line.setOrderQuantity(orderQuantity);
+        line.setUnitPrice(unitPrice);
+        line.setAmount(orderQuantity.multiply(unitPrice).setScale(2, RoundingMode.HALF_UP));
+        return line;
+    }
+
+    private BigDecimal toDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+    }
+}
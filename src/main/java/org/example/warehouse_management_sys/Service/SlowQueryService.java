@@ -0,0 +1,297 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.DTO.SlowQueryDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * 慢语句记录：MyBatis 和 JdbcTemplate 执行超过阈值时记录绑定后的SQL和参数，
+ * 保存最近N条（环形缓冲），并按采样率在独立连接上执行 EXPLAIN 补充执行计划。
+ * 阈值在语句首次执行时解析并缓存，未超阈值的执行只有一次耗时比较。
+ * 涉及密码等敏感字段的语句不保留参数值，也不做 EXPLAIN。
+ */
+@Slf4j
+@Service
+public class SlowQueryService {
+
+    public static final String SOURCE_MYBATIS = "mybatis";
+    public static final String SOURCE_JDBC = "jdbc";
+
+    private static final int MAX_PARAMETERS = 100;
+    private static final int MAX_PARAMETER_LENGTH = 200;
+    private static final String MASKED = "***";
+
+    @Resource
+    private DataSource dataSource;
+
+    @Resource(name = "explainExecutor")
+    private ThreadPoolTaskExecutor explainExecutor;
+
+    @Value("${app.slow-query.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.slow-query.default-threshold-ms:500}")
+    private long defaultThresholdMs;
+
+    /**
+     * 按语句设置阈值，格式: 语句=毫秒,语句=毫秒；MyBatis 语句按ID后缀匹配，JdbcTemplate 按 业务类.方法 匹配
+     */
+    @Value("${app.slow-query.thresholds:}")
+    private String thresholdsConfig;
+
+    /**
+     * 敏感语句，格式: 语句,语句；匹配方式同阈值。SQL 中含 password 列的语句始终视为敏感
+     */
+    @Value("${app.slow-query.mask-statements:OperatorMapper.updatePassword,OperatorMapper.selectByUsername}")
+    private String maskStatementsConfig;
+
+    @Value("${app.slow-query.capacity:100}")
+    private int capacity;
+
+    @Value("${app.slow-query.explain-sample-rate:0.2}")
+    private double explainSampleRate;
+
+    @Value("${app.slow-query.explain-interval-ms:60000}")
+    private long explainIntervalMs;
+
+    @Value("${app.slow-query.explain-timeout-seconds:5}")
+    private int explainTimeoutSeconds;
+
+    private final Map<String, Long> thresholds = new LinkedHashMap<>();
+
+    private final Set<String> maskStatements = new HashSet<>();
+
+    private AtomicReferenceArray<Entry> buffer;
+    private final AtomicLong sequence = new AtomicLong();
+
+    // key: 语句, value: 上次 EXPLAIN 时间
+    private final Map<String, Long> lastExplainTime = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String entry : thresholdsConfig.split(",")) {
+            String[] kv = entry.split("=");
+            if (kv.length == 2 && !kv[0].trim().isEmpty()) {
+                thresholds.put(kv[0].trim(), Long.parseLong(kv[1].trim()));
+            }
+        }
+        for (String statement : maskStatementsConfig.split(",")) {
+            if (!statement.trim().isEmpty()) {
+                maskStatements.add(statement.trim());
+            }
+        }
+        buffer = new AtomicReferenceArray<>(Math.max(1, capacity));
+        log.info("慢语句记录: 默认阈值{}ms, 语句阈值{}, 保留{}条", defaultThresholdMs, thresholds, buffer.length());
+    }
+
+    /**
+     * 语句的阈值(纳秒)，关闭时返回 Long.MAX_VALUE；调用方按语句缓存结果
+     */
+    public long thresholdNanos(String statement) {
+        if (!enabled) {
+            return Long.MAX_VALUE;
+        }
+        long thresholdMs = thresholds.entrySet().stream()
+                .filter(e -> statement.equals(e.getKey()) || statement.endsWith("." + e.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(defaultThresholdMs);
+        return TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+    }
+
+    /**
+     * 记录一条慢语句，SQL和参数仅在超阈值时才解析
+     */
+    public void record(String source, String statement, long elapsedNanos, long thresholdNanos, boolean success,
+                       Supplier<String> sql, Supplier<List<Object>> parameters) {
+        try {
+            String boundSql = normalizeSql(sql.get());
+            boolean sensitive = isSensitive(statement, boundSql);
+            List<Object> values = parameters.get();
+            Entry entry = new Entry(sequence.incrementAndGet(), source, statement, boundSql,
+                    sensitive ? mask(values) : render(values),
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), TimeUnit.NANOSECONDS.toMillis(thresholdNanos),
+                    success, Thread.currentThread().getName(), LocalDateTime.now());
+            buffer.set((int) ((entry.seq - 1) % buffer.length()), entry);
+            log.warn("慢语句[{}] {} 耗时{}ms(阈值{}ms)", source, statement, entry.elapsedMs, entry.thresholdMs);
+
+            if (!sensitive && shouldExplain(statement, boundSql)) {
+                Object[] args = values == null ? new Object[0] : values.toArray();
+                explainExecutor.execute(() -> entry.plan = explain(boundSql, args));
+            }
+        } catch (Exception e) {
+            log.warn("记录慢语句失败: {}", statement, e);
+        }
+    }
+
+    /**
+     * 最近的慢语句，按时间倒序
+     */
+    public List<SlowQueryDTO> getRecent(int limit) {
+        List<SlowQueryDTO> entries = new ArrayList<>();
+        for (int i = 0; i < buffer.length(); i++) {
+            Entry entry = buffer.get(i);
+            if (entry != null) {
+                entries.add(entry.toDTO());
+            }
+        }
+        entries.sort(Comparator.comparing(SlowQueryDTO::getSeq).reversed());
+        return entries.subList(0, Math.min(Math.max(limit, 0), entries.size()));
+    }
+
+    public Map<String, Object> getSettings() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("enabled", enabled);
+        settings.put("defaultThresholdMs", defaultThresholdMs);
+        settings.put("thresholds", thresholds);
+        settings.put("maskStatements", maskStatements);
+        settings.put("capacity", buffer.length());
+        settings.put("explainSampleRate", explainSampleRate);
+        settings.put("totalCaptured", sequence.get());
+        return settings;
+    }
+
+    public void clear() {
+        for (int i = 0; i < buffer.length(); i++) {
+            buffer.set(i, null);
+        }
+    }
+
+    private boolean isSensitive(String statement, String sql) {
+        if (sql.toLowerCase(Locale.ROOT).contains("password")) {
+            return true;
+        }
+        return maskStatements.stream()
+                .anyMatch(s -> statement.equals(s) || statement.endsWith("." + s));
+    }
+
+    /**
+     * 只对查询语句采样 EXPLAIN，同一语句在间隔内最多一次
+     */
+    private boolean shouldExplain(String statement, String sql) {
+        if (explainSampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= explainSampleRate) {
+            return false;
+        }
+        String head = sql.trim().toLowerCase(Locale.ROOT);
+        if (!head.startsWith("select") && !head.startsWith("with")) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        Long last = lastExplainTime.get(statement);
+        if (last != null && now - last < explainIntervalMs) {
+            return false;
+        }
+        lastExplainTime.put(statement, now);
+        return true;
+    }
+
+    /**
+     * 在独立连接上执行 EXPLAIN（不带 ANALYZE，不会真正执行语句）
+     */
+    private String explain(String sql, Object[] args) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+            ps.setQueryTimeout(explainTimeoutSeconds);
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        } catch (Exception e) {
+            log.debug("EXPLAIN 失败: {}", e.getMessage());
+            return "EXPLAIN 失败: " + e.getMessage();
+        }
+    }
+
+    private static String normalizeSql(String sql) {
+        return sql == null ? "" : sql.replaceAll("\\s+", " ").trim();
+    }
+
+    private static List<String> render(List<Object> values) {
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        List<String> rendered = new ArrayList<>(Math.min(values.size(), MAX_PARAMETERS));
+        for (Object value : values.subList(0, Math.min(values.size(), MAX_PARAMETERS))) {
+            String text = String.valueOf(value);
+            rendered.add(text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text);
+        }
+        return rendered;
+    }
+
+    private static List<String> mask(List<Object> values) {
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return Collections.nCopies(Math.min(values.size(), MAX_PARAMETERS), MASKED);
+    }
+
+    /**
+     * 缓冲区条目：记录时一次性构造，只有执行计划由 EXPLAIN 线程异步填充
+     */
+    private static class Entry {
+        final long seq;
+        final String source;
+        final String statement;
+        final String sql;
+        final List<String> parameters;
+        final long elapsedMs;
+        final long thresholdMs;
+        final boolean success;
+        final String thread;
+        final LocalDateTime captureTime;
+        volatile String plan;
+
+        Entry(long seq, String source, String statement, String sql, List<String> parameters,
+              long elapsedMs, long thresholdMs, boolean success, String thread, LocalDateTime captureTime) {
+            this.seq = seq;
+            this.source = source;
+            this.statement = statement;
+            this.sql = sql;
+            this.parameters = Collections.unmodifiableList(parameters);
+            this.elapsedMs = elapsedMs;
+            this.thresholdMs = thresholdMs;
+            this.success = success;
+            this.thread = thread;
+            this.captureTime = captureTime;
+        }
+
+        SlowQueryDTO toDTO() {
+            SlowQueryDTO dto = new SlowQueryDTO();
+            dto.setSeq(seq);
+            dto.setSource(source);
+            dto.setStatement(statement);
+            dto.setSql(sql);
+            dto.setParameters(parameters);
+            dto.setElapsedMs(elapsedMs);
+            dto.setThresholdMs(thresholdMs);
+            dto.setSuccess(success);
+            dto.setThread(thread);
+            dto.setCaptureTime(captureTime);
+            dto.setPlan(plan);
+            return dto;
+        }
+    }
+}
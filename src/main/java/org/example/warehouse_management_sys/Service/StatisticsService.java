@@ -6,6 +6,7 @@ import org.example.warehouse_management_sys.Entity.Material;
 import org.example.warehouse_management_sys.Mapper.StatisticsMapper;
 import org.example.warehouse_management_sys.Mapper.MaterialMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Resource;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -15,8 +16,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * 统计查询均为只读，整体走只读事务，配置副本时由副本承担
+ */
 @Slf4j
 @Service
+@Transactional(readOnly = true)
 public class StatisticsService {
 
     @Resource
@@ -28,8 +33,11 @@ public class StatisticsService {
 //    @Resource
 //    private SupplierMapper supplierMapper;
 
-    public List<StatisticsDTO> getMonthlyStatistics(Integer year, Integer month) {
-        return statisticsMapper.monthlyStatistics(year, month);
+    public List<StatisticsDTO> getMonthlyStatistics(Integer year, Integer month,
+                                                    String abcClass, String xyzClass) {
+        return statisticsMapper.monthlyStatistics(year, month,
+                abcClass == null ? null : abcClass.trim().toUpperCase(),
+                xyzClass == null ? null : xyzClass.trim().toUpperCase());
     }
 
     public List<StatisticsDTO> getCategoryFlowStatistics(String startDate, String endDate) {
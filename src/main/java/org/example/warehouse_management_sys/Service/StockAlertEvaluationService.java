@@ -0,0 +1,134 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.Entity.StockAlert;
+import org.example.warehouse_management_sys.Mapper.StockAlertMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 实时库存预警评估
+ * 出入库提交后按变动后库存与安全库存上下限比较，越界即生成“低库存/高库存”预警。
+ * 内存中维护未处理预警索引（物料+类型），同一物料同一类型已有未处理预警时不再重复生成，
+ * 新预警先入队，定时批量写库。预测批次预警（batch_id 非空）不参与去重。
+ */
+@Slf4j
+@Service
+public class StockAlertEvaluationService {
+
+    public static final String TYPE_LOW = "低库存";
+    public static final String TYPE_HIGH = "高库存";
+
+    @Resource
+    private StockAlertMapper stockAlertMapper;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.alert.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 未处理预警索引，键为 物料ID:预警类型
+     */
+    private final Set<String> openAlerts = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentLinkedQueue<StockAlert> pending = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    public void init() {
+        try {
+            jdbcTemplate.query("SELECT DISTINCT material_id, alert_type FROM stock_alert " +
+                            "WHERE status = '未处理' AND batch_id IS NULL AND alert_type IN (?, ?)",
+                    rs -> {
+                        openAlerts.add(key(rs.getString("material_id"), rs.getString("alert_type")));
+                    }, TYPE_LOW, TYPE_HIGH);
+            log.info("加载未处理库存预警索引 {} 条", openAlerts.size());
+        } catch (Exception e) {
+            log.error("加载未处理库存预警索引失败", e);
+        }
+    }
+
+    /**
+     * 出入库提交后评估：库存来自事务内已读取的物料行，无额外查询
+     */
+    public void onMovementCommitted(String materialId, BigDecimal afterStock,
+                                    BigDecimal safeStockMin, BigDecimal safeStockMax) {
+        if (safeStockMin != null && afterStock.compareTo(safeStockMin) < 0) {
+            raise(materialId, TYPE_LOW, afterStock, safeStockMin);
+        } else if (safeStockMax != null && afterStock.compareTo(safeStockMax) > 0) {
+            raise(materialId, TYPE_HIGH, afterStock, safeStockMax);
+        }
+    }
+
+    /**
+     * 预警处理后移出索引，之后再次越界可重新生成
+     */
+    public void onAlertHandled(StockAlert alert) {
+        if (alert != null && alert.getBatchId() == null) {
+            openAlerts.remove(key(alert.getMaterialId(), alert.getAlertType()));
+        }
+    }
+
+    private void raise(String materialId, String alertType, BigDecimal currentStock, BigDecimal threshold) {
+        if (!openAlerts.add(key(materialId, alertType))) {
+            return;
+        }
+        StockAlert alert = new StockAlert();
+        alert.setMaterialId(materialId);
+        alert.setAlertType(alertType);
+        alert.setCurrentStock(currentStock);
+        alert.setSafeThreshold(threshold);
+        alert.setAlertTime(LocalDateTime.now());
+        pending.add(alert);
+        log.info("库存越界预警入队: 物料={}, 类型={}, 库存={}, 阈值={}", materialId, alertType, currentStock, threshold);
+    }
+
+    /**
+     * 批量写入待落库预警
+     */
+    @Scheduled(fixedDelayString = "${app.alert.flush-interval-ms:2000}")
+    public void flush() {
+        while (!pending.isEmpty()) {
+            List<StockAlert> batch = new ArrayList<>(batchSize);
+            StockAlert alert;
+            while (batch.size() < batchSize && (alert = pending.poll()) != null) {
+                batch.add(alert);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                stockAlertMapper.insertBatch(batch);
+                log.info("批量写入库存预警 {} 条", batch.size());
+            } catch (Exception e) {
+                // 写入失败的预警移出索引，下次越界时重新生成
+                batch.forEach(failed -> openAlerts.remove(key(failed.getMaterialId(), failed.getAlertType())));
+                log.error("批量写入库存预警失败，丢弃 {} 条", batch.size(), e);
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private String key(String materialId, String alertType) {
+        return materialId + ":" + alertType;
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.warehouse_management_sys.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.warehouse_management_sys.Entity.Material;
+import org.example.warehouse_management_sys.Entity.Supplier;
+import org.example.warehouse_management_sys.Mapper.SupplierMapper;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 供应商目录缓存：启动时全量加载，按ID查找和按状态列表都在内存中完成。
+ * 供应商增删改及状态变更后失效（事务结束时再失效一次），下次读取时重新加载；
+ * 缓存有效期兜底覆盖其他节点的修改。物料查询不再关联 SUPPLIER，由这里补充供应商名称。
+ */
+@Slf4j
+@Service
+public class SupplierDirectory {
+
+    public static final String STATUS_ACTIVE = "合作中";
+
+    @Resource
+    private SupplierMapper supplierMapper;
+
+    @Value("${app.supplier.directory-ttl-ms:300000}")
+    private long directoryTtlMs;
+
+    private volatile Snapshot snapshot;
+
+    private final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        try {
+            current();
+        } catch (Exception e) {
+            // 启动时数据库不可用不影响启动，首次读取时再加载
+            log.warn("供应商目录预加载失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按ID查找，返回副本，调用方修改不影响缓存
+     */
+    public Supplier getById(String supplierId) {
+        return supplierId == null ? null : copyOf(current().byId.get(supplierId));
+    }
+
+    /**
+     * 全部供应商（副本），按创建时间倒序
+     */
+    public List<Supplier> getAll() {
+        return copyOf(current().all);
+    }
+
+    /**
+     * 合作中的供应商（副本），按名称排序
+     */
+    public List<Supplier> getActive() {
+        return copyOf(current().active);
+    }
+
+    /**
+     * 按编号、名称、联系人模糊匹配（副本），按编号排序
+     */
+    public List<Supplier> search(String keyword) {
+        return current().all.stream()
+                .filter(s -> contains(s.getSupplierId(), keyword)
+                        || contains(s.getSupplierName(), keyword)
+                        || contains(s.getContactPerson(), keyword))
+                .sorted(Comparator.comparing(Supplier::getSupplierId))
+                .map(SupplierDirectory::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 名称包含关键字的供应商ID（物料模糊查询用）
+     */
+    public List<String> findIdsByName(String keyword) {
+        return current().all.stream()
+                .filter(s -> contains(s.getSupplierName(), keyword))
+                .map(Supplier::getSupplierId)
+                .collect(Collectors.toList());
+    }
+
+    public String getName(String supplierId) {
+        Supplier supplier = getById(supplierId);
+        return supplier == null ? null : supplier.getSupplierName();
+    }
+
+    /**
+     * 为物料补充供应商名称
+     */
+    public Material enrich(Material material) {
+        if (material != null) {
+            material.setSupplierName(getName(material.getSupplierId()));
+        }
+        return material;
+    }
+
+    public List<Material> enrich(List<Material> materials) {
+        Map<String, Supplier> byId = current().byId;
+        for (Material material : materials) {
+            Supplier supplier = material.getSupplierId() == null ? null : byId.get(material.getSupplierId());
+            material.setSupplierName(supplier == null ? null : supplier.getSupplierName());
+        }
+        return materials;
+    }
+
+    /**
+     * 供应商数据变更后调用
+     */
+    public void invalidate() {
+        clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                }
+            });
+        }
+    }
+
+    private void clear() {
+        version.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot current() {
+        Snapshot cached = snapshot;
+        if (cached != null && System.currentTimeMillis() - cached.loadTime < directoryTtlMs) {
+            return cached;
+        }
+        long loadVersion = version.get();
+        Snapshot loaded = new Snapshot(supplierMapper.selectAll());
+        // 加载期间发生过失效则不写回，避免缓存旧数据
+        if (version.get() == loadVersion) {
+            snapshot = loaded;
+        }
+        return loaded;
+    }
+
+    private static Supplier copyOf(Supplier supplier) {
+        if (supplier == null) {
+            return null;
+        }
+        Supplier copy = new Supplier();
+        BeanUtils.copyProperties(supplier, copy);
+        return copy;
+    }
+
+    private static List<Supplier> copyOf(List<Supplier> suppliers) {
+        List<Supplier> copies = new ArrayList<>(suppliers.size());
+        suppliers.forEach(s -> copies.add(copyOf(s)));
+        return copies;
+    }
+
+    private static boolean contains(String value, String keyword) {
+        return value != null && value.contains(keyword);
+    }
+
+    /**
+     * 目录快照，持有的供应商对象只在内部读取，对外一律返回副本
+     */
+    private static class Snapshot {
+        final List<Supplier> all;
+        final List<Supplier> active;
+        final Map<String, Supplier> byId;
+        final long loadTime = System.currentTimeMillis();
+
+        Snapshot(List<Supplier> suppliers) {
+            this.all = Collections.unmodifiableList(new ArrayList<>(suppliers));
+            this.active = Collections.unmodifiableList(suppliers.stream()
+                    .filter(s -> STATUS_ACTIVE.equals(s.getStatus()))
+                    .sorted(Comparator.comparing(Supplier::getSupplierName,
+                            Comparator.nullsLast(Comparator.naturalOrder())))
+                    .collect(Collectors.toList()));
+            Map<String, Supplier> map = new HashMap<>(suppliers.size() * 2);
+            suppliers.forEach(s -> map.put(s.getSupplierId(), s));
+            this.byId = Collections.unmodifiableMap(map);
+        }
+    }
+}
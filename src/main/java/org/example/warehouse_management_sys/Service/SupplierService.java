@@ -19,6 +19,9 @@ public class SupplierService {
     @Resource
     private SupplierMapper supplierMapper;
 
+    @Resource
+    private SupplierDirectory supplierDirectory;
+
     /**
      * 新增供应商
      */
@@ -37,6 +40,7 @@ public class SupplierService {
         supplier.setUpdateTime(LocalDateTime.now());
 
         int result = supplierMapper.insert(supplier);
+        supplierDirectory.invalidate();
         log.info("新增供应商: {}, 名称: {}, 结果: {}",
                 dto.getSupplierId(), dto.getSupplierName(), result > 0);
         return result > 0;
@@ -58,6 +62,7 @@ public class SupplierService {
         supplier.setUpdateTime(LocalDateTime.now());
 
         int result = supplierMapper.update(supplier);
+        supplierDirectory.invalidate();
         log.info("更新供应商: {}, 结果: {}", dto.getSupplierId(), result > 0);
         return result > 0;
     }
@@ -71,6 +76,7 @@ public class SupplierService {
         if (result == 0) {
             throw new IllegalArgumentException("供应商不存在");
         }
+        supplierDirectory.invalidate();
         log.info("删除供应商: {}", supplierId);
         return true;
     }
@@ -79,21 +85,21 @@ public class SupplierService {
      * 根据ID查询供应商
      */
     public Supplier getSupplierById(String supplierId) {
-        return supplierMapper.selectById(supplierId);
+        return supplierDirectory.getById(supplierId);
     }
 
     /**
      * 查询所有供应商
      */
     public List<Supplier> getAllSuppliers() {
-        return supplierMapper.selectAll();
+        return supplierDirectory.getAll();
     }
 
     /**
      * 查询合作中的供应商
      */
     public List<Supplier> getActiveSuppliers() {
-        return supplierMapper.selectActive();
+        return supplierDirectory.getActive();
     }
 
     /**
@@ -103,7 +109,7 @@ public class SupplierService {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getAllSuppliers();
         }
-        return supplierMapper.selectByKeyword(keyword.trim());
+        return supplierDirectory.search(keyword.trim());
     }
 
     /**
@@ -120,6 +126,7 @@ public class SupplierService {
         if (result == 0) {
             throw new IllegalArgumentException("供应商不存在");
         }
+        supplierDirectory.invalidate();
         log.info("更新供应商状态: {}, 新状态: {}", supplierId, status);
         return true;
     }
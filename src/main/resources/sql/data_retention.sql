@@ -0,0 +1,45 @@
+-- 数据保留：过期的预警和预测日志按分片迁移到归档表，进度记录在 job_watermark
+
+-- 预警归档表
+CREATE TABLE IF NOT EXISTS stock_alert_archive (
+    alert_id       INTEGER PRIMARY KEY,
+    material_id    VARCHAR(20),
+    alert_type     VARCHAR(20),
+    current_stock  NUMERIC(12, 2),
+    safe_threshold NUMERIC(12, 2),
+    alert_time     TIMESTAMP,
+    status         VARCHAR(20),
+    handle_time    TIMESTAMP,
+    handle_remark  VARCHAR(500),
+    batch_id       VARCHAR(50),
+    source         VARCHAR(20),
+    archive_time   TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 已建的归档表补上预警来源列（见 stock_alert_source.sql）
+ALTER TABLE stock_alert_archive ADD COLUMN IF NOT EXISTS source VARCHAR(20);
+
+CREATE INDEX IF NOT EXISTS idx_stock_alert_archive_material_time
+    ON stock_alert_archive (material_id, alert_time);
+
+-- 预测日志归档表
+CREATE TABLE IF NOT EXISTS stock_prediction_log_archive (
+    log_id           BIGINT PRIMARY KEY,
+    batch_id         VARCHAR(50),
+    log_level        VARCHAR(20),
+    material_id      VARCHAR(20),
+    message          TEXT,
+    log_time         TIMESTAMP,
+    prediction_count INTEGER,
+    archive_time     TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_prediction_log_archive_batch
+    ON stock_prediction_log_archive (batch_id, log_id);
+
+-- 过期扫描索引：按类型和时间定位候选，按主键顺序分片
+CREATE INDEX IF NOT EXISTS idx_stock_alert_type_time_id
+    ON stock_alert (alert_type, alert_time, alert_id);
+
+CREATE INDEX IF NOT EXISTS idx_prediction_log_time_id
+    ON stock_prediction_log (log_time, log_id);
@@ -0,0 +1,22 @@
+-- 预测回测报告表：保存每次回测的准确率和性能指标，便于对比不同模型和参数
+CREATE TABLE IF NOT EXISTS forecast_backtest_report (
+    report_id       SERIAL PRIMARY KEY,
+    engine          VARCHAR(30)    NOT NULL,
+    source          VARCHAR(20)    NOT NULL,
+    material_count  INTEGER        NOT NULL,
+    history_days    INTEGER        NOT NULL,
+    train_days      INTEGER        NOT NULL,
+    horizon_days    INTEGER        NOT NULL,
+    step_days       INTEGER        NOT NULL,
+    cutoff_count    INTEGER        NOT NULL,
+    mape            NUMERIC(10, 2),
+    bias            NUMERIC(10, 2),
+    load_millis     BIGINT         NOT NULL,
+    wall_millis     BIGINT         NOT NULL,
+    rows_per_second BIGINT         NOT NULL,
+    memory_bytes    BIGINT         NOT NULL,
+    run_time        TIMESTAMP      NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_backtest_report_engine_time
+    ON forecast_backtest_report (engine, run_time DESC);
@@ -0,0 +1,34 @@
+-- 出入库异常表：InoutService 在每次出入库提交后实时打分，超过阈值的记录写入此表
+CREATE TABLE IF NOT EXISTS inout_anomaly (
+    record_id      VARCHAR(50)    PRIMARY KEY,
+    material_id    VARCHAR(20)    NOT NULL,
+    inout_type     VARCHAR(10)    NOT NULL,
+    quantity       NUMERIC(12, 2) NOT NULL,
+    z_score        NUMERIC(8, 2)  NOT NULL,
+    avg_quantity   NUMERIC(12, 2),
+    std_quantity   NUMERIC(12, 2),
+    sample_count   INTEGER,
+    cluster        INTEGER,
+    anomaly_reason VARCHAR(200),
+    operation_time TIMESTAMP      NOT NULL,
+    detect_time    TIMESTAMP      NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_inout_anomaly_time
+    ON inout_anomaly (operation_time DESC);
+
+CREATE INDEX IF NOT EXISTS idx_inout_anomaly_material
+    ON inout_anomaly (material_id, operation_time DESC);
+
+-- 异常列表按 z_score 取前100条，沿索引顺序扫描，满足时间条件的行够数即停止，不再全表排序
+CREATE INDEX IF NOT EXISTS idx_inout_anomaly_zscore
+    ON inout_anomaly (z_score DESC NULLS LAST);
+
+-- 从异常检测视图回填历史异常（仅执行一次）
+-- 视图的聚类编号与应用内 K-means 模型不同，不回填；应用加载聚类模型后按模型重标 cluster
+INSERT INTO inout_anomaly (record_id, material_id, inout_type, quantity, z_score, cluster, anomaly_reason, operation_time)
+SELECT v.record_id, v.material_id, ir.inout_type, v.quantity, COALESCE(v.z_score, 0), NULL, v.anomaly_reason, v.operation_time
+FROM v_anomaly_inout_loose_4517 v
+JOIN inout_record ir ON ir.record_id = v.record_id
+WHERE v.anomaly_reason LIKE '%超出历史均值%'
+ON CONFLICT (record_id) DO NOTHING;
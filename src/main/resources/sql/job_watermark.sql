@@ -0,0 +1,15 @@
+-- 任务水位线表：记录增量任务已处理到的位置 (operation_time, record_id)
+CREATE TABLE IF NOT EXISTS job_watermark (
+    job_name            VARCHAR(50) PRIMARY KEY,
+    last_operation_time TIMESTAMP   NOT NULL,
+    last_record_id      VARCHAR(50) NOT NULL DEFAULT '',
+    update_time         TIMESTAMP   NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 增量扫描索引：按 (operation_time, record_id) 键集分片
+CREATE INDEX IF NOT EXISTS idx_inout_record_time_id
+    ON inout_record (operation_time, record_id);
+
+-- 回溯窗口统计索引
+CREATE INDEX IF NOT EXISTS idx_inout_record_material_type_time
+    ON inout_record (material_id, inout_type, operation_time);
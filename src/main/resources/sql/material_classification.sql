@@ -0,0 +1,27 @@
+-- 物料日出库汇总表：按水位线增量追加完整日的出库量，供分类等按日统计使用
+CREATE TABLE IF NOT EXISTS material_daily_outbound (
+    material_id VARCHAR(20)    NOT NULL,
+    stat_date   DATE           NOT NULL,
+    quantity    NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (material_id, stat_date)
+);
+
+CREATE INDEX IF NOT EXISTS idx_material_daily_outbound_date
+    ON material_daily_outbound (stat_date);
+
+-- 物料 ABC/XYZ 分类表
+CREATE TABLE IF NOT EXISTS material_classification (
+    material_id       VARCHAR(20)    PRIMARY KEY,
+    consumption_value NUMERIC(16, 2) NOT NULL DEFAULT 0,  -- 窗口内出库金额
+    value_share       NUMERIC(8, 4)  NOT NULL DEFAULT 0,  -- 累计金额占比
+    demand_cv         NUMERIC(10, 4),                     -- 日需求变异系数
+    abc_class         CHAR(1)        NOT NULL,
+    xyz_class         CHAR(1)        NOT NULL,
+    classify_time     TIMESTAMP      NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 物料列表和统计按分类筛选
+CREATE INDEX IF NOT EXISTS idx_material_classification_class
+    ON material_classification (abc_class, xyz_class);
+CREATE INDEX IF NOT EXISTS idx_material_classification_xyz
+    ON material_classification (xyz_class);
@@ -0,0 +1,48 @@
+-- 物料级预测模型表：按物料保存日均需求预测和训练基线，漂移时仅重训受影响物料
+-- 采购计划按 daily_rate 折算年需求，断货模拟按 daily_rate 校准抽样需求水平
+CREATE TABLE IF NOT EXISTS material_forecast_model (
+    material_id       VARCHAR(20)    PRIMARY KEY,
+    engine            VARCHAR(30)    NOT NULL,
+    daily_rate        NUMERIC(14, 4) NOT NULL DEFAULT 0,  -- 预测日均出库
+    baseline_mean     NUMERIC(14, 4) NOT NULL DEFAULT 0,  -- 训练窗口日均出库
+    baseline_std      NUMERIC(14, 4) NOT NULL DEFAULT 0,  -- 训练窗口日出库标准差
+    sample_days       INTEGER        NOT NULL DEFAULT 0,
+    retrain_reason    VARCHAR(100),
+    version           INTEGER        NOT NULL DEFAULT 1,
+    train_time        TIMESTAMP      NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    -- 训练以来的流式出库统计，出库事务内增量累加，重训时清零
+    observed_total    NUMERIC(18, 4) NOT NULL DEFAULT 0,  -- 日出库量之和
+    observed_total_sq NUMERIC(24, 4) NOT NULL DEFAULT 0,  -- 日出库量平方和
+    current_day       DATE,                               -- 当前累计日
+    current_day_qty   NUMERIC(14, 4) NOT NULL DEFAULT 0   -- 当前累计日出库量
+);
+
+-- 已存在的表补充流式统计列
+ALTER TABLE material_forecast_model ADD COLUMN IF NOT EXISTS observed_total NUMERIC(18, 4) NOT NULL DEFAULT 0;
+ALTER TABLE material_forecast_model ADD COLUMN IF NOT EXISTS observed_total_sq NUMERIC(24, 4) NOT NULL DEFAULT 0;
+ALTER TABLE material_forecast_model ADD COLUMN IF NOT EXISTS current_day DATE;
+ALTER TABLE material_forecast_model ADD COLUMN IF NOT EXISTS current_day_qty NUMERIC(14, 4) NOT NULL DEFAULT 0;
+
+-- 已有模型按训练以来的出库记录初始化流式统计（仅执行一次）
+UPDATE material_forecast_model fm
+SET observed_total    = s.total,
+    observed_total_sq = s.total_sq,
+    current_day       = CURRENT_DATE,
+    current_day_qty   = s.today_qty
+FROM (
+    SELECT d.material_id,
+           SUM(d.qty)                                                  AS total,
+           SUM(d.qty * d.qty)                                          AS total_sq,
+           COALESCE(SUM(CASE WHEN d.op_date = CURRENT_DATE THEN d.qty END), 0) AS today_qty
+    FROM (
+        SELECT ir.material_id, CAST(ir.operation_time AS DATE) AS op_date, SUM(ir.quantity) AS qty
+        FROM inout_record ir
+        JOIN material_forecast_model m ON m.material_id = ir.material_id
+        WHERE ir.inout_type = '出库'
+          AND ir.operation_time >= m.train_time
+        GROUP BY ir.material_id, CAST(ir.operation_time AS DATE)
+    ) d
+    GROUP BY d.material_id
+) s
+WHERE fm.material_id = s.material_id
+  AND fm.current_day IS NULL;
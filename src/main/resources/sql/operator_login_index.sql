@@ -0,0 +1,3 @@
+-- 登录按操作员名称查找（operator_id 为主键），两次索引查找代替 OR 全表扫描
+CREATE INDEX IF NOT EXISTS idx_operator_name
+    ON operator (operator_name);
@@ -0,0 +1,2 @@
+-- 操作员状态版本：令牌中携带签发时的版本，修改密码或停用时递增，旧令牌随即失效
+ALTER TABLE operator ADD COLUMN IF NOT EXISTS status_version INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,18 @@
+-- 预警分页查询索引：按 (alert_time, alert_id) 键集分页
+
+-- 未处理预警部分索引（预警页面默认查询），已处理的历史预警不进入该索引
+CREATE INDEX IF NOT EXISTS idx_stock_alert_open
+    ON stock_alert (alert_time DESC, alert_id DESC)
+    WHERE status = '未处理';
+
+-- 未处理预警按类型筛选
+CREATE INDEX IF NOT EXISTS idx_stock_alert_open_type
+    ON stock_alert (alert_type, alert_time DESC, alert_id DESC)
+    WHERE status = '未处理';
+
+-- 全部预警及按物料查询
+CREATE INDEX IF NOT EXISTS idx_stock_alert_time
+    ON stock_alert (alert_time DESC, alert_id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_stock_alert_material_time
+    ON stock_alert (material_id, alert_time DESC, alert_id DESC);
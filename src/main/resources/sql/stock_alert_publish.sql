@@ -0,0 +1,20 @@
+-- 预测预警批次版本：stock_alert 中的预测预警按批次写入，读端只看到已发布批次
+ALTER TABLE stock_alert ADD COLUMN IF NOT EXISTS batch_id VARCHAR(50);
+
+CREATE INDEX IF NOT EXISTS idx_stock_alert_type_batch
+    ON stock_alert (alert_type, batch_id);
+
+-- 已发布批次指针（每种预警类型一行，单行更新即原子切换）
+CREATE TABLE IF NOT EXISTS stock_alert_publish (
+    alert_type   VARCHAR(20) PRIMARY KEY,
+    batch_id     VARCHAR(50) NOT NULL,
+    publish_time TIMESTAMP   NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 现有未处理的预测预警归入 LEGACY 批次并发布（仅执行一次）
+UPDATE stock_alert SET batch_id = 'LEGACY'
+WHERE alert_type = '低库存' AND status = '未处理' AND batch_id IS NULL;
+
+INSERT INTO stock_alert_publish (alert_type, batch_id)
+SELECT '低库存', 'LEGACY'
+WHERE NOT EXISTS (SELECT 1 FROM stock_alert_publish WHERE alert_type = '低库存');
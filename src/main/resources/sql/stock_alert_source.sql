@@ -0,0 +1,3 @@
+-- 预警来源：存储过程生成（含预测批次）或应用内实时评估生成
+-- 预测批次发布只为存储过程生成的预警打批次号，实时评估预警不会被归入批次或随旧批次清理
+ALTER TABLE stock_alert ADD COLUMN IF NOT EXISTS source VARCHAR(20) NOT NULL DEFAULT '存储过程';
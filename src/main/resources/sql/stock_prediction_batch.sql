@@ -0,0 +1,55 @@
+-- 预测批次汇总表：由 stock_prediction_log 插入触发器增量维护，替代每次全表 GROUP BY
+CREATE TABLE IF NOT EXISTS stock_prediction_batch (
+    batch_id         VARCHAR(50) PRIMARY KEY,
+    start_time       TIMESTAMP   NOT NULL,
+    end_time         TIMESTAMP   NOT NULL,
+    log_count        INTEGER     NOT NULL DEFAULT 0,
+    success_count    INTEGER     NOT NULL DEFAULT 0,
+    prediction_count INTEGER     NOT NULL DEFAULT 0
+);
+
+-- 最新批次索引
+CREATE INDEX IF NOT EXISTS idx_prediction_batch_end_time
+    ON stock_prediction_batch (end_time DESC);
+
+-- 批次日志键集分页索引
+CREATE INDEX IF NOT EXISTS idx_prediction_log_batch_id
+    ON stock_prediction_log (batch_id, log_id);
+
+-- 每写入一条预测日志，累加所属批次的汇总
+CREATE OR REPLACE FUNCTION fn_stock_prediction_batch_summary() RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.batch_id IS NULL THEN
+        RETURN NEW;
+    END IF;
+    INSERT INTO stock_prediction_batch (batch_id, start_time, end_time, log_count, success_count, prediction_count)
+    VALUES (NEW.batch_id, NEW.log_time, NEW.log_time, 1,
+            CASE WHEN NEW.log_level = 'SUCCESS' THEN 1 ELSE 0 END,
+            COALESCE(NEW.prediction_count, 0))
+    ON CONFLICT (batch_id) DO UPDATE SET
+        start_time       = LEAST(stock_prediction_batch.start_time, EXCLUDED.start_time),
+        end_time         = GREATEST(stock_prediction_batch.end_time, EXCLUDED.end_time),
+        log_count        = stock_prediction_batch.log_count + 1,
+        success_count    = stock_prediction_batch.success_count + EXCLUDED.success_count,
+        prediction_count = GREATEST(stock_prediction_batch.prediction_count, EXCLUDED.prediction_count);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_stock_prediction_batch_summary ON stock_prediction_log;
+CREATE TRIGGER trg_stock_prediction_batch_summary
+    AFTER INSERT ON stock_prediction_log
+    FOR EACH ROW EXECUTE PROCEDURE fn_stock_prediction_batch_summary();
+
+-- 历史批次回填（仅执行一次）
+INSERT INTO stock_prediction_batch (batch_id, start_time, end_time, log_count, success_count, prediction_count)
+SELECT batch_id,
+       MIN(log_time),
+       MAX(log_time),
+       COUNT(*),
+       SUM(CASE WHEN log_level = 'SUCCESS' THEN 1 ELSE 0 END),
+       COALESCE(MAX(prediction_count), 0)
+FROM stock_prediction_log
+WHERE batch_id IS NOT NULL
+GROUP BY batch_id
+ON CONFLICT (batch_id) DO NOTHING;
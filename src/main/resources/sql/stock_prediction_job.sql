@@ -0,0 +1,18 @@
+-- 库存预测任务历史表：记录每次异步预测任务的状态和结果
+CREATE TABLE IF NOT EXISTS stock_prediction_job (
+    job_id           VARCHAR(40)  PRIMARY KEY,
+    trigger_source   VARCHAR(20)  NOT NULL,
+    status           VARCHAR(10)  NOT NULL,
+    progress         INTEGER      NOT NULL DEFAULT 0,
+    stage            VARCHAR(100),
+    message          VARCHAR(500),
+    batch_id         VARCHAR(50),
+    prediction_count INTEGER,
+    submit_time      TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    start_time       TIMESTAMP,
+    end_time         TIMESTAMP
+);
+
+-- 任务历史按提交时间倒序查询
+CREATE INDEX IF NOT EXISTS idx_prediction_job_submit
+    ON stock_prediction_job (submit_time DESC);
@@ -0,0 +1,40 @@
+-- 库存预测结果表：按批次保存结构化预测数据，替代从 stock_prediction_log 消息中解析数值
+CREATE TABLE IF NOT EXISTS stock_prediction_result (
+    result_id        SERIAL PRIMARY KEY,
+    batch_id         VARCHAR(50)    NOT NULL,
+    material_id      VARCHAR(20)    NOT NULL,
+    current_stock    NUMERIC(12, 2) NOT NULL DEFAULT 0,
+    predicted_change NUMERIC(12, 2) NOT NULL DEFAULT 0,
+    predicted_stock  NUMERIC(12, 2) NOT NULL DEFAULT 0,
+    create_time      TIMESTAMP      NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 已存在的表：清理重复写入的 (批次, 物料) 行，保留最早一条
+DELETE FROM stock_prediction_result r
+WHERE EXISTS (SELECT 1 FROM stock_prediction_result d
+              WHERE d.batch_id = r.batch_id
+                AND d.material_id = r.material_id
+                AND d.result_id < r.result_id);
+
+-- 每个批次每个物料只保留一条结果，重跑回填或重试批次不会重复写入；同时用于按批次取数
+DROP INDEX IF EXISTS idx_prediction_result_batch;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_prediction_result_batch_material
+    ON stock_prediction_result (batch_id, material_id);
+
+-- 最新批次索引
+CREATE INDEX IF NOT EXISTS idx_prediction_result_time
+    ON stock_prediction_result (create_time DESC);
+
+-- 历史批次回填（可重复执行，已存在的 (批次, 物料) 跳过）
+INSERT INTO stock_prediction_result (batch_id, material_id, current_stock, predicted_change, predicted_stock, create_time)
+SELECT l.batch_id,
+       l.material_id,
+       COALESCE(CAST(SUBSTRING(l.message FROM '当前=([0-9.]+)') AS NUMERIC), 0),
+       COALESCE(CAST(SUBSTRING(l.message FROM '变化=(-?[0-9.]+)') AS NUMERIC), 0),
+       COALESCE(CAST(SUBSTRING(l.message FROM '预测=([0-9.]+)') AS NUMERIC), 0),
+       l.log_time
+FROM stock_prediction_log l
+WHERE l.material_id IS NOT NULL
+  AND l.message LIKE '物料%当前=%'
+ORDER BY l.log_id
+ON CONFLICT (batch_id, material_id) DO NOTHING;
@@ -0,0 +1,141 @@
+package org.example.warehouse_management_sys.Config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.DruidPooledConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private static final long MAX_LAG_MS = 1000;
+
+    private DruidDataSource primary;
+    private DruidDataSource replica;
+    private DruidPooledConnection primaryConnection;
+    private DruidPooledConnection replicaConnection;
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = mock(DruidDataSource.class);
+        replica = mock(DruidDataSource.class);
+        primaryConnection = mock(DruidPooledConnection.class);
+        replicaConnection = mock(DruidPooledConnection.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+
+        Map<String, DruidDataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica1", replica);
+        routingDataSource = new ReadWriteRoutingDataSource(primary, replicas, MAX_LAG_MS, "SELECT lag");
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void writesAlwaysUsePrimary() throws SQLException {
+        replicaLag(10);
+        routingDataSource.checkReplicas();
+
+        assertSame(primaryConnection, routingDataSource.getConnection());
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        assertSame(primaryConnection, routingDataSource.getConnection());
+        assertEquals(2, routingDataSource.getPrimaryConnections());
+        assertEquals(0, routingDataSource.getReplicaConnections());
+    }
+
+    @Test
+    void readOnlyTransactionUsesHealthyReplica() throws SQLException {
+        replicaLag(10);
+        routingDataSource.checkReplicas();
+        readOnlyTransaction();
+
+        assertSame(replicaConnection, routingDataSource.getConnection());
+        assertEquals(1, routingDataSource.getReplicaConnections());
+        assertEquals(10L, routingDataSource.getReplicaLags().get("replica1"));
+    }
+
+    @Test
+    void replicaIsNotUsedBeforeFirstCheck() throws SQLException {
+        readOnlyTransaction();
+
+        assertSame(primaryConnection, routingDataSource.getConnection());
+        assertEquals(1, routingDataSource.getFallbackConnections());
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() throws SQLException {
+        replicaLag(MAX_LAG_MS + 1);
+        routingDataSource.checkReplicas();
+        readOnlyTransaction();
+
+        assertSame(primaryConnection, routingDataSource.getConnection());
+        assertEquals(1, routingDataSource.getFallbackConnections());
+    }
+
+    @Test
+    void unavailableLagFallsBackToPrimary() throws SQLException {
+        replicaLag(-1);
+        routingDataSource.checkReplicas();
+        readOnlyTransaction();
+
+        assertSame(primaryConnection, routingDataSource.getConnection());
+        assertEquals(-1L, routingDataSource.getReplicaLags().get("replica1"));
+    }
+
+    @Test
+    void replicaRecoversAfterLagDrops() throws SQLException {
+        replicaLag(MAX_LAG_MS + 1);
+        routingDataSource.checkReplicas();
+        replicaLag(0);
+        routingDataSource.checkReplicas();
+        readOnlyTransaction();
+
+        assertSame(replicaConnection, routingDataSource.getConnection());
+    }
+
+    @Test
+    void connectionFailureMarksReplicaUnhealthy() throws SQLException {
+        replicaLag(10);
+        routingDataSource.checkReplicas();
+        readOnlyTransaction();
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        assertSame(primaryConnection, routingDataSource.getConnection());
+        assertSame(primaryConnection, routingDataSource.getConnection());
+        assertEquals(2, routingDataSource.getFallbackConnections());
+    }
+
+    private void readOnlyTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+
+    private void replicaLag(long lagMs) throws SQLException {
+        DruidPooledConnection checkConnection = mock(DruidPooledConnection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(checkConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getDouble(1)).thenReturn((double) lagMs);
+        when(replica.getConnection()).thenReturn(checkConnection, replicaConnection);
+    }
+}
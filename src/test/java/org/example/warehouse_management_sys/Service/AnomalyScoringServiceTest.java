@@ -0,0 +1,215 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.example.warehouse_management_sys.Entity.InoutAnomaly;
+import org.example.warehouse_management_sys.Service.AnomalyScoringService.Movement;
+import org.example.warehouse_management_sys.Service.AnomalyScoringService.RunningStats;
+import org.example.warehouse_management_sys.Service.AnomalyScoringService.SlidingWindow;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AnomalyScoringServiceTest {
+
+    private static final double DELTA = 1e-9;
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 1, 1, 8, 0);
+
+    @Test
+    void runningStatsMatchesPopulationStatistics() {
+        RunningStats stats = new RunningStats();
+        for (double value : new double[]{2, 4, 4, 4, 5, 5, 7, 9}) {
+            stats.add(value);
+        }
+
+        assertEquals(8, stats.count);
+        assertEquals(5.0, stats.mean, DELTA);
+        assertEquals(2.0, stats.std(), DELTA);
+    }
+
+    @Test
+    void runningStatsRemoveReversesAdd() {
+        RunningStats stats = new RunningStats();
+        for (double value : new double[]{100, 2, 4, 4, 4, 5, 5, 7, 9}) {
+            stats.add(value);
+        }
+        stats.remove(100);
+
+        assertEquals(8, stats.count);
+        assertEquals(5.0, stats.mean, DELTA);
+        assertEquals(2.0, stats.std(), 1e-6);
+    }
+
+    @Test
+    void runningStatsRemoveLastSampleResets() {
+        RunningStats stats = new RunningStats();
+        stats.add(3);
+        stats.remove(3);
+
+        assertEquals(0, stats.count);
+        assertEquals(0.0, stats.mean, DELTA);
+        assertEquals(0.0, stats.std(), DELTA);
+    }
+
+    @Test
+    void runningStatsOrdersByTimeThenRecordId() {
+        RunningStats stats = new RunningStats();
+        assertTrue(stats.isAfterLast(BASE, "R1"));
+
+        stats.markLast(BASE, "R2");
+        assertFalse(stats.isAfterLast(BASE.minusSeconds(1), "R9"));
+        assertFalse(stats.isAfterLast(BASE, "R1"));
+        assertFalse(stats.isAfterLast(BASE, "R2"));
+        assertTrue(stats.isAfterLast(BASE, "R3"));
+        assertTrue(stats.isAfterLast(BASE.plusSeconds(1), "R0"));
+    }
+
+    @Test
+    void priorWindowExcludesTargetAndLaterRecords() {
+        Movement first = movement("R1", "M1", "出库", 10, BASE);
+        Movement second = movement("R2", "M1", "出库", 20, BASE.plusHours(1));
+        Movement third = movement("R3", "M1", "出库", 30, BASE.plusHours(2));
+        List<Movement> history = Arrays.asList(first, second, third);
+
+        List<RunningStats> stats =
+                AnomalyScoringService.priorWindowStats(history, history, 90);
+
+        assertEquals(0, stats.get(0).count);
+        assertEquals(1, stats.get(1).count);
+        assertEquals(10.0, stats.get(1).mean, DELTA);
+        assertEquals(2, stats.get(2).count);
+        assertEquals(15.0, stats.get(2).mean, DELTA);
+    }
+
+    @Test
+    void priorWindowDropsRecordsOlderThanLookback() {
+        Movement old = movement("R1", "M1", "出库", 1000, BASE);
+        Movement recent = movement("R2", "M1", "出库", 10, BASE.plusDays(5));
+        Movement target = movement("R3", "M1", "出库", 12, BASE.plusDays(11));
+
+        List<RunningStats> stats = AnomalyScoringService.priorWindowStats(
+                Arrays.asList(old, recent), Collections.singletonList(target), 10);
+
+        assertEquals(1, stats.get(0).count);
+        assertEquals(10.0, stats.get(0).mean, DELTA);
+    }
+
+    @Test
+    void priorWindowSeparatesMaterialAndType() {
+        List<Movement> history = Arrays.asList(
+                movement("R1", "M1", "出库", 10, BASE),
+                movement("R2", "M1", "入库", 500, BASE.plusMinutes(1)),
+                movement("R3", "M2", "出库", 700, BASE.plusMinutes(2)));
+        Movement target = movement("R4", "M1", "出库", 12, BASE.plusMinutes(3));
+
+        List<RunningStats> stats = AnomalyScoringService.priorWindowStats(
+                history, Collections.singletonList(target), 90);
+
+        assertEquals(1, stats.get(0).count);
+        assertEquals(10.0, stats.get(0).mean, DELTA);
+    }
+
+    @Test
+    void priorWindowOrdersSameTimestampByRecordId() {
+        Movement a = movement("R1", "M1", "出库", 10, BASE);
+        Movement b = movement("R2", "M1", "出库", 20, BASE);
+
+        List<RunningStats> stats =
+                AnomalyScoringService.priorWindowStats(Arrays.asList(a, b), Collections.singletonList(b), 90);
+
+        assertEquals(1, stats.get(0).count);
+        assertEquals(10.0, stats.get(0).mean, DELTA);
+    }
+
+    @Test
+    void slidingWindowEvictsExpiredSamples() {
+        SlidingWindow window = new SlidingWindow();
+        window.add(BASE, 1000);
+        window.add(BASE.plusDays(5), 10);
+        window.add(BASE.plusDays(8), 20);
+
+        window.evictBefore(BASE.plusDays(1));
+
+        assertEquals(2, window.size());
+        assertEquals(2, window.stats.count);
+        assertEquals(15.0, window.stats.mean, 1e-6);
+    }
+
+    @Test
+    void realtimeWindowMatchesBatchPriorWindow() {
+        List<Movement> movements = new ArrayList<>();
+        double[] quantities = {10, 12, 9, 11, 50, 10, 13, 8, 12, 11, 200, 10};
+        for (int i = 0; i < quantities.length; i++) {
+            movements.add(movement(String.format("R%02d", i), "M1", "出库", quantities[i], BASE.plusDays(i * 3L)));
+        }
+        List<RunningStats> batch = AnomalyScoringService.priorWindowStats(movements, movements, 10);
+
+        // 实时打分：打分前移出窗口外样本，打分后累加本条
+        SlidingWindow window = new SlidingWindow();
+        for (int i = 0; i < movements.size(); i++) {
+            Movement movement = movements.get(i);
+            window.evictBefore(movement.getOperationTime().minusDays(10));
+            assertEquals(batch.get(i).count, window.stats.count);
+            assertEquals(batch.get(i).mean, window.stats.mean, 1e-6);
+            assertEquals(batch.get(i).std(), window.stats.std(), 1e-6);
+            window.add(movement.getOperationTime(), movement.getQuantity().doubleValue());
+        }
+    }
+
+    @Test
+    void zScoreAboveThresholdIsAnomaly() {
+        AnomalyScoringService service = newService(2.5);
+
+        InoutAnomaly anomaly = evaluate(service, 20, 10, 2, 10);
+
+        assertNotNull(anomaly);
+        assertEquals(new BigDecimal("5.00"), anomaly.getZScore());
+        assertEquals(10, anomaly.getSampleCount());
+        assertEquals(Integer.valueOf(1), anomaly.getCluster());
+    }
+
+    @Test
+    void zScoreBelowThresholdOrLowerTailIsNormal() {
+        AnomalyScoringService service = newService(2.5);
+
+        assertNull(evaluate(service, 14, 10, 2, 10));
+        assertNull(evaluate(service, 0, 10, 2, 10));
+    }
+
+    @Test
+    void tooFewSamplesOrZeroStdIsNotScored() {
+        AnomalyScoringService service = newService(2.5);
+
+        assertNull(evaluate(service, 100, 10, 2, 4));
+        assertNull(evaluate(service, 100, 10, 0, 10));
+    }
+
+    private static AnomalyScoringService newService(double threshold) {
+        ClusterModelRegistry clusterModelRegistry = mock(ClusterModelRegistry.class);
+        when(clusterModelRegistry.predict(anyDouble())).thenReturn(1);
+        AnomalyScoringService service = new AnomalyScoringService();
+        ReflectionTestUtils.setField(service, "threshold", threshold);
+        ReflectionTestUtils.setField(service, "clusterModelRegistry", clusterModelRegistry);
+        return service;
+    }
+
+    private static InoutAnomaly evaluate(AnomalyScoringService service, double quantity,
+                                         double mean, double std, long count) {
+        return ReflectionTestUtils.invokeMethod(service, "evaluate", "R1", "M1", "出库",
+                BigDecimal.valueOf(quantity), BASE, mean, std, count);
+    }
+
+    private static Movement movement(String recordId, String materialId, String inoutType,
+                                     double quantity, LocalDateTime operationTime) {
+        return new Movement(recordId, materialId, inoutType, BigDecimal.valueOf(quantity), operationTime);
+    }
+}
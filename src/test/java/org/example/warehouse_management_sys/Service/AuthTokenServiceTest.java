@@ -0,0 +1,128 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.example.warehouse_management_sys.Entity.Operator;
+import org.example.warehouse_management_sys.Mapper.OperatorMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AuthTokenServiceTest {
+
+    private static final String OPERATOR_ID = "OP001";
+    private static final String SECRET = "test-secret-0123456789abcdefghijk";
+
+    private OperatorMapper operatorMapper;
+    private OperatorStatusCache operatorStatusCache;
+    private AuthTokenService service;
+
+    @BeforeEach
+    void setUp() {
+        operatorMapper = mock(OperatorMapper.class);
+        when(operatorMapper.selectById(OPERATOR_ID)).thenReturn(operator(OperatorStatusCache.STATUS_ACTIVE, 1));
+
+        operatorStatusCache = new OperatorStatusCache();
+        ReflectionTestUtils.setField(operatorStatusCache, "operatorMapper", operatorMapper);
+        ReflectionTestUtils.setField(operatorStatusCache, "cacheTtlMs", 30000L);
+
+        service = newService(SECRET, 60);
+    }
+
+    @Test
+    void issuedTokenVerifies() {
+        assertEquals(OPERATOR_ID, service.verify(service.issue(OPERATOR_ID)));
+    }
+
+    @Test
+    void tamperedSignatureIsRejected() {
+        String token = service.issue(OPERATOR_ID);
+        char last = token.charAt(token.length() - 1);
+        String tampered = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        assertNull(service.verify(tampered));
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() {
+        String token = service.issue(OPERATOR_ID);
+        String signature = token.substring(token.indexOf('.') + 1);
+        long expiresAt = System.currentTimeMillis() / 1000 + 3600;
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("OP002|" + expiresAt + "|1").getBytes(StandardCharsets.UTF_8));
+
+        assertNull(service.verify(payload + "." + signature));
+    }
+
+    @Test
+    void tokenSignedWithOtherSecretIsRejected() {
+        String token = newService("other-secret-0123456789abcdefghijk", 60).issue(OPERATOR_ID);
+
+        assertNull(service.verify(token));
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String token = newService(SECRET, -1).issue(OPERATOR_ID);
+
+        assertNull(service.verify(token));
+    }
+
+    @Test
+    void tokenWithOldStatusVersionIsRejected() {
+        String token = service.issue(OPERATOR_ID);
+        // 改密后状态版本递增
+        when(operatorMapper.selectById(OPERATOR_ID)).thenReturn(operator(OperatorStatusCache.STATUS_ACTIVE, 2));
+        operatorStatusCache.evict(OPERATOR_ID);
+
+        assertNull(service.verify(token));
+        assertEquals(OPERATOR_ID, service.verify(service.issue(OPERATOR_ID)));
+    }
+
+    @Test
+    void tokenOfDisabledOperatorIsRejected() {
+        String token = service.issue(OPERATOR_ID);
+        when(operatorMapper.selectById(OPERATOR_ID)).thenReturn(operator("离职", 1));
+        operatorStatusCache.evict(OPERATOR_ID);
+
+        assertNull(service.verify(token));
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        assertNull(service.verify(null));
+        assertNull(service.verify(""));
+        assertNull(service.verify("no-signature"));
+        assertNull(service.verify(".signature"));
+        assertNull(service.verify("payload."));
+    }
+
+    @Test
+    void missingOrShortSecretFailsStartup() {
+        assertThrows(IllegalStateException.class, () -> newService(null, 60));
+        assertThrows(IllegalStateException.class, () -> newService("   ", 60));
+        assertThrows(IllegalStateException.class, () -> newService("short-secret", 60));
+    }
+
+    private AuthTokenService newService(String secret, long ttlMinutes) {
+        AuthTokenService tokenService = new AuthTokenService();
+        ReflectionTestUtils.setField(tokenService, "operatorStatusCache", operatorStatusCache);
+        ReflectionTestUtils.setField(tokenService, "tokenSecret", secret);
+        ReflectionTestUtils.setField(tokenService, "tokenTtlMinutes", ttlMinutes);
+        tokenService.init();
+        return tokenService;
+    }
+
+    private static Operator operator(String status, int statusVersion) {
+        Operator operator = new Operator();
+        operator.setOperatorId(OPERATOR_ID);
+        operator.setStatus(status);
+        operator.setStatusVersion(statusVersion);
+        return operator;
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.example.warehouse_management_sys.Service.ClusterModelRegistry.ClusterModel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterModelRegistryTest {
+
+    @Test
+    void trainOrdersCentroidsAscending() {
+        ClusterModel model = ClusterModelRegistry.train(new double[]{1, 2, 3, 50, 52, 54, 200, 210}, 3);
+
+        assertEquals(3, model.getClusterCount());
+        assertEquals(2.0, model.getCentroid(0), 1e-9);
+        assertEquals(52.0, model.getCentroid(1), 1e-9);
+        assertEquals(205.0, model.getCentroid(2), 1e-9);
+        assertEquals(8, model.getSampleCount());
+    }
+
+    @Test
+    void boundariesAgreeWithNearestCentroid() {
+        ClusterModel model = ClusterModelRegistry.train(new double[]{1, 2, 3, 50, 52, 54, 200, 210}, 3);
+        double[] bounds = ClusterModelRegistry.boundaries(model.getCentroids());
+
+        assertArrayEquals(new double[]{27.0, 128.5}, bounds, 1e-9);
+        for (double quantity = 0; quantity <= 300; quantity += 0.5) {
+            assertEquals(model.nearest(quantity), label(bounds, quantity), "quantity=" + quantity);
+        }
+    }
+
+    @Test
+    void emptyDataTrainsEmptyModel() {
+        ClusterModel model = ClusterModelRegistry.train(new double[0], 3);
+
+        assertEquals(0, model.getClusterCount());
+        assertEquals(0, ClusterModelRegistry.boundaries(model.getCentroids()).length);
+    }
+
+    /**
+     * 与重标 SQL 相同的 CASE 规则
+     */
+    private static int label(double[] bounds, double quantity) {
+        for (int c = 0; c < bounds.length; c++) {
+            if (quantity <= bounds[c]) {
+                return c;
+            }
+        }
+        return bounds.length;
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DB4AIServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private PlatformTransactionManager transactionManager;
+    private PurchasePlanService purchasePlanService;
+    private DB4AIService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        service = new DB4AIService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionTemplate", new TransactionTemplate(transactionManager));
+        purchasePlanService = mock(PurchasePlanService.class);
+        ReflectionTestUtils.setField(service, "purchasePlanService", purchasePlanService);
+
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COUNT(*) FROM inout_record"), eq(Integer.class))).thenReturn(20);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COUNT(*) FROM pg_proc"), eq(Integer.class))).thenReturn(1);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COALESCE(MAX(alert_id)"), eq(Long.class))).thenReturn(100L);
+        when(jdbcTemplate.query(startsWith("SELECT batch_id FROM stock_prediction_batch"), any(ResultSetExtractor.class)))
+                .thenReturn("B1");
+        List<String> materialIds = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            materialIds.add(String.format("M%03d", i));
+        }
+        when(jdbcTemplate.queryForList(startsWith("SELECT DISTINCT material_id"), eq(String.class), eq("B1")))
+                .thenReturn(materialIds);
+    }
+
+    @Test
+    void procedureAndChunksCommitInSeparateTransactions() {
+        List<Integer> progress = new ArrayList<>();
+        when(jdbcTemplate.update(startsWith("UPDATE stock_alert SET batch_id"), eq("B1"), eq(100L))).thenReturn(7);
+
+        Map<String, Object> result = service.generateStockPredictions((p, stage) -> progress.add(p), () -> false);
+
+        assertEquals(200, result.get("code"));
+        assertEquals(7, result.get("predictionCount"));
+        verify(purchasePlanService).invalidate();
+        // 存储过程 1 个事务 + 3 个结果分片 + 发布 1 个事务
+        verify(transactionManager, times(5)).commit(any());
+        // 存储过程阶段不伪造进度，分片进度从 20 开始单调递增
+        assertEquals(List.of(5, 10, 20, 51, 82, 95, 97), progress);
+    }
+
+    @Test
+    void cancelAfterProcedureDiscardsUnpublishedBatch() {
+        AtomicInteger checks = new AtomicInteger();
+        // 第 4 次检查（第一个结果分片前）时请求取消
+        Map<String, Object> result = service.generateStockPredictions((p, stage) -> { },
+                () -> checks.incrementAndGet() >= 4);
+
+        assertEquals(499, result.get("code"));
+        verify(jdbcTemplate).update(startsWith("DELETE FROM stock_alert WHERE alert_type"), eq(100L));
+        verify(jdbcTemplate).update(startsWith("DELETE FROM stock_prediction_result"), eq("B1"), eq("B1"));
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE stock_alert_publish"), any(), any());
+        verify(purchasePlanService, never()).invalidate();
+    }
+
+    @Test
+    void cancelBeforeProcedureLeavesDataUntouched() {
+        Map<String, Object> result = service.generateStockPredictions((p, stage) -> { }, () -> true);
+
+        assertEquals(499, result.get("code"));
+        verify(jdbcTemplate, never()).execute(anyString());
+        verify(jdbcTemplate, never()).update(startsWith("DELETE"), (Object[]) any());
+    }
+
+    @Test
+    void systemStatusIsRefreshedLazilyAfterTtl() {
+        ReflectionTestUtils.setField(service, "statusCacheTtlMs", 60000L);
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(statusCounts());
+
+        Map<String, Object> first = service.getSystemStatus(false);
+        assertSame(first, service.getSystemStatus(false));
+        verify(jdbcTemplate, times(1)).queryForMap(anyString());
+
+        ReflectionTestUtils.setField(service, "cachedStatusTime", 0L);
+        assertNotSame(first, service.getSystemStatus(false));
+        verify(jdbcTemplate, times(2)).queryForMap(anyString());
+    }
+
+    @Test
+    void staleStatusIsServedWhileAnotherThreadRefreshes() throws Exception {
+        ReflectionTestUtils.setField(service, "statusCacheTtlMs", 60000L);
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(statusCounts());
+        Map<String, Object> stale = service.getSystemStatus(false);
+        ReflectionTestUtils.setField(service, "cachedStatusTime", 0L);
+
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.queryForMap(anyString())).thenAnswer(invocation -> {
+            refreshing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return statusCounts();
+        });
+        Thread refresher = new Thread(() -> service.getSystemStatus(false));
+        refresher.start();
+        assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+
+        // 刷新进行中，其他请求直接返回旧值，不再并发查询
+        assertSame(stale, service.getSystemStatus(false));
+        release.countDown();
+        refresher.join(5000);
+        verify(jdbcTemplate, times(2)).queryForMap(anyString());
+    }
+
+    private static Map<String, Object> statusCounts() {
+        return Map.of("history_count", 20L, "prediction_count", 3L, "material_count", 5L);
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.example.warehouse_management_sys.DTO.BacktestReportDTO.MaterialAccuracy;
+import org.example.warehouse_management_sys.Service.ForecastBacktestService.Engine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastBacktestServiceTest {
+
+    private ForecastBacktestService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ForecastBacktestService();
+        ReflectionTestUtils.setField(service, "trainDays", 2);
+        ReflectionTestUtils.setField(service, "horizonDays", 1);
+        ReflectionTestUtils.setField(service, "stepDays", 1);
+        ReflectionTestUtils.setField(service, "smoothingAlpha", 0.5);
+    }
+
+    @Test
+    void movingAverageMapeAndBias() {
+        // 截止点2: 预测10 实际10；截止点3: 预测10 实际20
+        MaterialAccuracy accuracy = evaluate(new double[]{10, 10, 10, 20}, Engine.MOVING_AVERAGE);
+
+        assertEquals(2, accuracy.getCutoffs());
+        assertEquals(new BigDecimal("25.00"), accuracy.getMape());
+        assertEquals(new BigDecimal("-33.33"), accuracy.getBias());
+    }
+
+    @Test
+    void exponentialSmoothingForecast() {
+        // 水平值 0 → 0.5 × 10 + 0.5 × 0 = 5，实际 10
+        MaterialAccuracy accuracy = evaluate(new double[]{0, 10, 10}, Engine.EXPONENTIAL);
+
+        assertEquals(1, accuracy.getCutoffs());
+        assertEquals(new BigDecimal("50.00"), accuracy.getMape());
+        assertEquals(new BigDecimal("-50.00"), accuracy.getBias());
+    }
+
+    @Test
+    void stepDaysSkipsCutoffs() {
+        ReflectionTestUtils.setField(service, "stepDays", 2);
+
+        MaterialAccuracy accuracy = evaluate(new double[]{10, 10, 10, 20, 15}, Engine.MOVING_AVERAGE);
+
+        // 截止点2、4 均预测准确，截止点3被跳过
+        assertEquals(2, accuracy.getCutoffs());
+        assertEquals(0, accuracy.getMape().signum());
+    }
+
+    @Test
+    void zeroActualCutoffsAreSkipped() {
+        MaterialAccuracy accuracy = evaluate(new double[]{10, 10, 0, 20}, Engine.MOVING_AVERAGE);
+
+        // 截止点2实际为0不计入，只剩截止点3: 预测5 实际20
+        assertEquals(1, accuracy.getCutoffs());
+        assertEquals(new BigDecimal("75.00"), accuracy.getMape());
+    }
+
+    @Test
+    void noEvaluableCutoffReturnsNull() {
+        assertNull(evaluate(new double[]{5, 5, 0, 0}, Engine.MOVING_AVERAGE));
+        assertNull(evaluate(new double[]{5, 5}, Engine.MOVING_AVERAGE));
+    }
+
+    private MaterialAccuracy evaluate(double[] daily, Engine engine) {
+        return ReflectionTestUtils.invokeMethod(service, "evaluate", "M001", daily, engine);
+    }
+}
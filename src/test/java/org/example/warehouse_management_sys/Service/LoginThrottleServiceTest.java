@@ -0,0 +1,89 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleServiceTest {
+
+    private LoginThrottleService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new LoginThrottleService();
+        ReflectionTestUtils.setField(service, "userCapacity", 3);
+        ReflectionTestUtils.setField(service, "userRefillPerMinute", 0.0);
+        ReflectionTestUtils.setField(service, "ipCapacity", 5);
+        ReflectionTestUtils.setField(service, "ipRefillPerMinute", 0.0);
+        ReflectionTestUtils.setField(service, "unknownUserTtlMs", 60000L);
+        ReflectionTestUtils.setField(service, "maxTrackedKeys", 100);
+        ReflectionTestUtils.setField(service, "maxConcurrentQueries", 1);
+        ReflectionTestUtils.setField(service, "queryWaitMs", 0L);
+        service.init();
+    }
+
+    @Test
+    void userBucketLimitsAttemptsPerUsername() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.tryAcquire("alice", "10.0.0." + i));
+        }
+        assertFalse(service.tryAcquire("alice", "10.0.0.9"));
+        // 用户名限流不区分大小写和首尾空格
+        assertFalse(service.tryAcquire(" ALICE ", "10.0.0.8"));
+        assertTrue(service.tryAcquire("bob", "10.0.0.7"));
+    }
+
+    @Test
+    void ipBucketLimitsAttemptsAcrossUsernames() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.tryAcquire("user" + i, "10.0.0.1"));
+        }
+        assertFalse(service.tryAcquire("user9", "10.0.0.1"));
+        assertTrue(service.tryAcquire("user9", "10.0.0.2"));
+    }
+
+    @Test
+    void bucketRefillsOverTime() throws InterruptedException {
+        ReflectionTestUtils.setField(service, "userRefillPerMinute", 60000.0);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.tryAcquire("carol", "10.0.1." + i));
+        }
+        Thread.sleep(20);
+        assertTrue(service.tryAcquire("carol", "10.0.1.9"));
+    }
+
+    @Test
+    void unknownUserIsCachedByExactUsername() {
+        assertFalse(service.isKnownUnknown("Admin"));
+        service.markUnknown("Admin");
+
+        assertTrue(service.isKnownUnknown("Admin"));
+        assertFalse(service.isKnownUnknown("admin"));
+        assertFalse(service.isKnownUnknown(null));
+    }
+
+    @Test
+    void unknownUserExpires() {
+        ReflectionTestUtils.setField(service, "unknownUserTtlMs", -1L);
+        service.markUnknown("ghost");
+
+        assertFalse(service.isKnownUnknown("ghost"));
+    }
+
+    @Test
+    void queryPermitIsReleasedAfterQuery() {
+        assertEquals("ok", service.withQueryPermit(() -> "ok"));
+        assertEquals("ok", service.withQueryPermit(() -> "ok"));
+    }
+
+    @Test
+    void queryIsRejectedWhenPermitsExhausted() {
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> service.withQueryPermit(() -> service.withQueryPermit(() -> "nested")));
+        assertEquals("登录繁忙，请稍后再试", e.getMessage());
+        // 失败后许可已归还
+        assertEquals("ok", service.withQueryPermit(() -> "ok"));
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MaterialStatsServiceTest {
+
+    private static final String MATERIAL_ID = "M001";
+
+    private JdbcTemplate jdbcTemplate;
+    private MaterialStatsService service;
+
+    // 模拟数据库中已提交的出库：条数、合计、平方和
+    private long count = 2;
+    private double total = 30;
+    private double totalSq = 500;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        service = new MaterialStatsService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "clusterModelRegistry", mock(ClusterModelRegistry.class));
+        ReflectionTestUtils.setField(service, "cacheTtlMs", 600000L);
+        doAnswer(invocation -> {
+            emitRow(invocation.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), (Object[]) any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void committedOutboundIsAddedToCachedAggregate() {
+        stats();
+        service.recordOutbound(MATERIAL_ID, new BigDecimal("30"));
+
+        assertEquals(3L, stats().get("record_count"));
+        assertEquals(20.0, (Double) stats().get("avg_quantity"), 1e-9);
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), (Object[]) any());
+    }
+
+    @Test
+    void loadWhileOutboundInFlightIsNotCached() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.recordOutbound(MATERIAL_ID, new BigDecimal("30"));
+        // 出库已提交、提交回调尚未执行时加载，查询已包含该出库
+        commitRow(30);
+        assertEquals(3L, stats().get("record_count"));
+
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        // 未缓存，重新加载得到正确值而不是再累加一次
+        assertEquals(3L, stats().get("record_count"));
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), (Object[]) any());
+    }
+
+    @Test
+    void outboundCompletedDuringLoadIsNotLost() {
+        // 查询返回后、回写缓存前有出库提交
+        doAnswer(invocation -> {
+            emitRow(invocation.getArgument(1));
+            commitRow(30);
+            service.recordOutbound(MATERIAL_ID, new BigDecimal("30"));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), (Object[]) any());
+        assertEquals(2L, stats().get("record_count"));
+
+        doAnswer(invocation -> {
+            emitRow(invocation.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), (Object[]) any());
+        assertEquals(3L, stats().get("record_count"));
+    }
+
+    @Test
+    void rolledBackOutboundIsNotAdded() {
+        stats();
+        TransactionSynchronizationManager.initSynchronization();
+        service.recordOutbound(MATERIAL_ID, new BigDecimal("30"));
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(2L, stats().get("record_count"));
+    }
+
+    private Map<String, Object> stats() {
+        return service.getStats(List.of(MATERIAL_ID)).get(MATERIAL_ID);
+    }
+
+    private void commitRow(double quantity) {
+        count++;
+        total += quantity;
+        totalSq += quantity * quantity;
+    }
+
+    private void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private void emitRow(RowCallbackHandler handler) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("material_id")).thenReturn(MATERIAL_ID);
+        when(rs.getLong("cnt")).thenReturn(count);
+        when(rs.getDouble("total")).thenReturn(total);
+        when(rs.getDouble("total_sq")).thenReturn(totalSq);
+        handler.processRow(rs);
+    }
+}
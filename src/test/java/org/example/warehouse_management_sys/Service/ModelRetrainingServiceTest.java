@@ -0,0 +1,69 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ModelRetrainingServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ModelRetrainingService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        service = new ModelRetrainingService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void outboundIsAggregatedPerMaterialUntilFlush() {
+        service.recordOutbound("M001", new BigDecimal("3"));
+        service.recordOutbound("M001", new BigDecimal("4"));
+        service.recordOutbound("M002", new BigDecimal("5"));
+        verifyNoInteractions(jdbcTemplate);
+
+        service.flushOutbound();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        List<Object[]> written = rows.getValue();
+        written.sort(Comparator.comparing(row -> (String) row[row.length - 1]));
+        assertEquals(2, written.size());
+        assertEquals(new BigDecimal("7"), written.get(0)[0]);
+        assertEquals(new BigDecimal("5"), written.get(1)[0]);
+
+        service.flushOutbound();
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedFlushIsRetried() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(new int[]{1});
+        service.recordOutbound("M001", new BigDecimal("3"));
+
+        service.flushOutbound();
+        service.recordOutbound("M001", new BigDecimal("2"));
+        service.flushOutbound();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), rows.capture());
+        assertEquals(new BigDecimal("5"), rows.getAllValues().get(1).get(0)[0]);
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.example.warehouse_management_sys.DTO.PurchasePlanDTO;
+import org.example.warehouse_management_sys.DTO.PurchasePlanDTO.PlanLine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PurchasePlanServiceTest {
+
+    private PurchasePlanService service;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        service = new PurchasePlanService();
+        jdbcTemplate = mock(JdbcTemplate.class);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        when(jdbcTemplate.queryForList(startsWith("SELECT batch_id FROM stock_alert_publish"), eq(String.class)))
+                .thenReturn(List.of("B1"));
+        ReflectionTestUtils.setField(service, "orderCost", 200.0);
+        ReflectionTestUtils.setField(service, "holdingRate", 0.2);
+        ReflectionTestUtils.setField(service, "demandDays", 365);
+    }
+
+    @Test
+    void eoqUsesModelDailyRate() {
+        // 年需求 10 × 365 = 3650，持有成本 50 × 0.2 = 10，EOQ = sqrt(2 × 3650 × 200 / 10) ≈ 382.10
+        Map<String, Object> row = row("100", "0", "500", "50", "99999");
+        row.put("model_daily_rate", new BigDecimal("10"));
+
+        PlanLine line = buildLine(row);
+
+        assertEquals(new BigDecimal("3650.00"), line.getAnnualDemand());
+        assertEquals(new BigDecimal("382.10"), line.getEoq());
+        assertEquals(new BigDecimal("400"), line.getShortfall());
+        // 缺口 400 按 EOQ 整批向上取整为 2 批
+        assertEquals(new BigDecimal("765"), line.getOrderQuantity());
+        assertEquals(new BigDecimal("38250.00"), line.getAmount());
+    }
+
+    @Test
+    void eoqFallsBackToOutboundHistoryWithoutModel() {
+        // 年需求取统计窗口出库量 1825，持有成本 10 × 0.2 = 2，EOQ = sqrt(2 × 1825 × 200 / 2) ≈ 604.15
+        PlanLine line = buildLine(row("40", "100", "0", "10", "1825"));
+
+        assertEquals(new BigDecimal("1825.00"), line.getAnnualDemand());
+        assertEquals(new BigDecimal("604.15"), line.getEoq());
+        // safe_stock_max 未设置时目标库存取 safe_stock_min
+        assertEquals(new BigDecimal("100"), line.getTargetStock());
+        assertEquals(new BigDecimal("605"), line.getOrderQuantity());
+    }
+
+    @Test
+    void orderShortfallWhenPriceIsMissing() {
+        PlanLine line = buildLine(row("40", "100", "0", "0", "1825"));
+
+        assertEquals(0, line.getEoq().signum());
+        assertEquals(new BigDecimal("60"), line.getOrderQuantity());
+        assertEquals("未指定供应商", line.getSupplierName());
+    }
+
+    @Test
+    void noOrderWhenPredictedStockCoversTarget() {
+        PlanLine line = buildLine(row("600", "100", "500", "50", "1825"));
+
+        assertEquals(0, line.getShortfall().signum());
+        assertEquals(0, line.getOrderQuantity().signum());
+    }
+
+    @Test
+    void cachedPlanIsServedWithoutQueries() {
+        PurchasePlanDTO plan = service.getPurchasePlan(false);
+
+        assertSame(plan, service.getPurchasePlan(false));
+        assertEquals("B1", plan.getBatchId());
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(String.class));
+    }
+
+    @Test
+    void publishedBatchInvalidatesPlan() {
+        PurchasePlanDTO plan = service.getPurchasePlan(false);
+        when(jdbcTemplate.queryForList(startsWith("SELECT batch_id FROM stock_alert_publish"), eq(String.class)))
+                .thenReturn(List.of("B2"));
+
+        service.invalidate();
+
+        assertNotSame(plan, service.getPurchasePlan(false));
+        assertEquals("B2", service.getPurchasePlan(false).getBatchId());
+    }
+
+    @Test
+    void planBuiltDuringInvalidationIsNotCached() {
+        // 生成计划期间发布了新批次
+        when(jdbcTemplate.queryForList(startsWith("SELECT m.material_id"), (Object[]) any())).thenAnswer(invocation -> {
+            service.invalidate();
+            return List.of();
+        });
+        PurchasePlanDTO plan = service.getPurchasePlan(false);
+
+        assertNotSame(plan, service.getPurchasePlan(false));
+    }
+
+    private PlanLine buildLine(Map<String, Object> row) {
+        return ReflectionTestUtils.invokeMethod(service, "buildLine", row);
+    }
+
+    private static Map<String, Object> row(String predictedStock, String safeStockMin, String safeStockMax,
+                                           String unitPrice, String demand) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("material_id", "M001");
+        row.put("material_name", "测试物料");
+        row.put("unit", "个");
+        row.put("current_stock", new BigDecimal(predictedStock));
+        row.put("predicted_stock", new BigDecimal(predictedStock));
+        row.put("safe_stock_min", new BigDecimal(safeStockMin));
+        row.put("safe_stock_max", new BigDecimal(safeStockMax));
+        row.put("unit_price", new BigDecimal(unitPrice));
+        row.put("demand", new BigDecimal(demand));
+        return row;
+    }
+}
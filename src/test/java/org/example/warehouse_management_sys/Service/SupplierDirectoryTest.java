@@ -0,0 +1,62 @@
+package org.example.warehouse_management_sys.Service;
+
+import org.example.warehouse_management_sys.Entity.Supplier;
+import org.example.warehouse_management_sys.Mapper.SupplierMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SupplierDirectoryTest {
+
+    private SupplierMapper supplierMapper;
+    private SupplierDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        supplierMapper = mock(SupplierMapper.class);
+        when(supplierMapper.selectAll()).thenReturn(List.of(
+                supplier("S001", "甲供应商", SupplierDirectory.STATUS_ACTIVE),
+                supplier("S002", "乙供应商", "暂停")));
+        directory = new SupplierDirectory();
+        ReflectionTestUtils.setField(directory, "supplierMapper", supplierMapper);
+        ReflectionTestUtils.setField(directory, "directoryTtlMs", 300000L);
+    }
+
+    @Test
+    void modifyingReturnedSupplierDoesNotChangeCache() {
+        directory.getById("S001").setSupplierName("被修改");
+        directory.getAll().get(0).setStatus("终止");
+        directory.getActive().get(0).setSupplierName("被修改");
+        directory.search("供应商").forEach(s -> s.setContactPerson("被修改"));
+
+        Supplier cached = directory.getById("S001");
+        assertEquals("甲供应商", cached.getSupplierName());
+        assertEquals(SupplierDirectory.STATUS_ACTIVE, cached.getStatus());
+        assertEquals("张三", cached.getContactPerson());
+        assertEquals(1, directory.getActive().size());
+        verify(supplierMapper, times(1)).selectAll();
+    }
+
+    @Test
+    void invalidateReloadsDirectory() {
+        directory.getAll();
+        directory.invalidate();
+        directory.getAll();
+
+        verify(supplierMapper, times(2)).selectAll();
+    }
+
+    private static Supplier supplier(String id, String name, String status) {
+        Supplier supplier = new Supplier();
+        supplier.setSupplierId(id);
+        supplier.setSupplierName(name);
+        supplier.setContactPerson("张三");
+        supplier.setStatus(status);
+        return supplier;
+    }
+}